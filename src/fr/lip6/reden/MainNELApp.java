@@ -36,12 +36,28 @@ import fr.lip6.reden.enrichne.AuthorsEnrichment;
 import fr.lip6.reden.enrichne.GeodataGeneration;
 import fr.lip6.reden.enrichne.EnrichmentHandler;
 import fr.lip6.reden.ldextractor.AppAdhoc;
+import fr.lip6.reden.nelinker.CandidateCache;
+import fr.lip6.reden.nelinker.CandidateSet;
 import fr.lip6.reden.nelinker.CentralityHandler;
+import fr.lip6.reden.nelinker.CentralityOptions;
+import fr.lip6.reden.nelinker.DicoFST;
+import fr.lip6.reden.nelinker.DicoLookupService;
 import fr.lip6.reden.nelinker.DicoProcessingNEL;
 import fr.lip6.reden.nelinker.EvalInfo;
+import fr.lip6.reden.nelinker.FailureLedger;
 import fr.lip6.reden.nelinker.GraphHandlerNEL;
 import fr.lip6.reden.nelinker.LabeledEdge;
+import fr.lip6.reden.nelinker.PredicateProfile;
+import fr.lip6.reden.nelinker.RDFCacheStore;
+import fr.lip6.reden.nelinker.RDFDumpImporter;
+import fr.lip6.reden.nelinker.RDFFetcher;
+import fr.lip6.reden.nelinker.RDFModelCache;
 import fr.lip6.reden.nelinker.ResultsAndEvaluationNEL;
+import fr.lip6.reden.nelinker.SameAsClosure;
+import fr.lip6.reden.nelinker.SparqlRDFRetriever;
+import fr.lip6.reden.nelinker.StreamingGraphFusion;
+import fr.lip6.reden.nelinker.SubjectTripleIndex;
+import fr.lip6.reden.nelinker.UriRegistry;
 
 /**
  * This class implements the main method to launch the proposed 
@@ -63,9 +79,10 @@ public class MainNELApp {
 			logger.info("REDEN finished in "+ (end.getTime() - start.getTime()) / 60 + " secs");
 		} else {
 			System.out.println("Three modes possible for providing arguments: "
-					+ "1) <config_file> <tei-fileName.xml> [-printEval] [-createIndex] [-relsFile=<file>] [-outDir=<dir>] or"
+					+ "1) <config_file> <tei-fileName.xml> [-printEval] [-createIndex|-updateIndex] [-relsFile=<file>] [-outDir=<dir>] or"
 					+ "2) <config_file> -createDico=bnf|bnf-all|dbpediafr|dbpediafr-author|getty-per|bne|bne-all|all|LGD-loc"
-					+ "3) <config_file> <tei-fileName-withURIs.xml> -produceData4Visu=<output.json> -propsFile=<config_ld_properties>");
+					+ "3) <config_file> <tei-fileName-withURIs.xml> -produceData4Visu=<output.json> -propsFile=<config_ld_properties> or"
+					+ "4) <config_file> -importRDFCache|-convertRDFCache|-listFetchFailures|-importDump=<dump.nt.gz>[,<dump.nt.gz>...]|-buildSameAsClosure");
 		}
 	}
 
@@ -93,11 +110,85 @@ public class MainNELApp {
 				return;
 			}
 			
+			//only imports the RDF files of rdfData into the configured RDF cache, skips NEL
+			if (argsMap.containsKey("importRDFCache")) {
+				Properties prop = new Properties();
+				InputStream input = new FileInputStream(propertiesFile);
+				prop.load(input);
+				String backend = prop.getProperty("rdfCacheBackend", "files");
+				if (backend.trim().equalsIgnoreCase("files")) {
+					System.out.println("rdfCacheBackend=files already uses the RDF files of rdfData, nothing to import");
+					return;
+				}
+				RDFCacheStore rdfCache = RDFCacheStore.open(backend, prop.getProperty("rdfCacheFormat", "n3"),
+						prop.getProperty("rdfData"));
+				RDFCacheStore.importFolder(prop.getProperty("rdfData"), rdfCache);
+				rdfCache.close();
+				return;
+			}
+			
+			//only converts the RDF cache into the configured format (rdfCacheFormat), skips NEL
+			if (argsMap.containsKey("convertRDFCache")) {
+				Properties prop = new Properties();
+				InputStream input = new FileInputStream(propertiesFile);
+				prop.load(input);
+				RDFCacheStore rdfCache = RDFCacheStore.open(prop.getProperty("rdfCacheBackend", "files"), 
+						prop.getProperty("rdfCacheFormat", "n3"), prop.getProperty("rdfData"));
+				RDFCacheStore.convert(rdfCache);
+				rdfCache.close();
+				return;
+			}
+			
+			//only prints the URIs whose RDF data could not be downloaded, skips NEL
+			if (argsMap.containsKey("listFetchFailures")) {
+				Properties prop = new Properties();
+				InputStream input = new FileInputStream(propertiesFile);
+				prop.load(input);
+				FailureLedger.load(prop).print(System.out);
+				return;
+			}
+			
+			//only imports the descriptions of the dictionary URIs from N-Triples dumps into the RDF cache, skips NEL
+			if (argsMap.containsKey("importDump")) {
+				Properties prop = new Properties();
+				InputStream input = new FileInputStream(propertiesFile);
+				prop.load(input);
+				RDFCacheStore rdfCache = RDFCacheStore.open(prop.getProperty("rdfCacheBackend", "files"), 
+						prop.getProperty("rdfCacheFormat", "n3"), prop.getProperty("rdfData"));
+				RDFDumpImporter importer = new RDFDumpImporter(rdfCache, 
+						RDFDumpImporter.dictionaryURIs(prop.getProperty("nameMainFolderDico")), 
+						prop.getProperty("sameAsproperty"));
+				for (String dump : argsMap.get("importDump").split(",")) {
+					importer.importDump(new File(dump.trim()));
+				}
+				rdfCache.close();
+				return;
+			}
+			
+			//only builds the closure of the sameAs links of the RDF cache (sameAsClosureFile), skips NEL
+			if (argsMap.containsKey("buildSameAsClosure")) {
+				Properties prop = new Properties();
+				InputStream input = new FileInputStream(propertiesFile);
+				prop.load(input);
+				String closureFile = prop.getProperty("sameAsClosureFile", "").trim();
+				if (closureFile.isEmpty()) {
+					System.out.println("the parameter sameAsClosureFile is missing in the properties file");
+					return;
+				}
+				RDFCacheStore rdfCache = RDFCacheStore.open(prop.getProperty("rdfCacheBackend", "files"), 
+						prop.getProperty("rdfCacheFormat", "n3"), prop.getProperty("rdfData"));
+				SameAsClosure.build(rdfCache, prop.getProperty("sameAsproperty"), 
+						prop.getProperty("nameMainFolderDico"), new File(closureFile));
+				rdfCache.close();
+				return;
+			}
+			
 			if (!argsMap.containsKey("tei")) { //there is no TEI file
 				System.out.println("Three modes possible for providing arguments: "
-						+ "1) <config_file> <tei-fileName.xml> [-printEval] [-createIndex] [-relsFile=<file>] [-outDir=<dir>] or"
+						+ "1) <config_file> <tei-fileName.xml> [-printEval] [-createIndex|-updateIndex] [-relsFile=<file>] [-outDir=<dir>] or"
 						+ "2) <config_file> -createDico=bnf|bnf-all|dbpediafr|dbpediafr-author|getty-per|bne|bne-all|all|LGD-loc"
-						+ "3) <config_file> <tei-fileName-withURIs.xml> -produceData4Visu=<output.json> -propsFile=<config_ld_properties>");
+						+ "3) <config_file> <tei-fileName-withURIs.xml> -produceData4Visu=<output.json> -propsFile=<config_ld_properties> or"
+						+ "4) <config_file> -importRDFCache|-convertRDFCache|-listFetchFailures|-importDump=<dump.nt.gz>[,<dump.nt.gz>...]|-buildSameAsClosure");
 				return;
 			}
 			
@@ -110,6 +201,7 @@ public class MainNELApp {
 			//String[] baseUris = prop.getProperty("baseURIs").split(",");
 			String baseUris = prop.getProperty("baseURIs");
 			String measure = prop.getProperty("centralityMeasure");
+			CentralityOptions centralityOptions = CentralityOptions.load(prop);
 			String useindex = prop.getProperty("useDicoIndex");
 			String indexDir = prop.getProperty("indexDir");
 			String preferedURI = prop.getProperty("preferedURIOrder");
@@ -121,6 +213,24 @@ public class MainNELApp {
 			String crawlSameAs = prop.getProperty("crawlSameAs");
 			String sameAsproperty = prop.getProperty("sameAsproperty");
 			String kBsLocalNoNetwork = prop.getProperty("KBsLocalNoNetwork");
+			int indexThreads = Integer.parseInt(prop.getProperty("indexThreads", "1").trim());
+			double indexRAMBufferMB = Double.parseDouble(prop.getProperty("indexRAMBufferMB", "16").trim());
+			int dicoCacheSize = Integer.parseInt(prop.getProperty("dicoCacheSize", "10000").trim());
+			int fetchThreads = Integer.parseInt(prop.getProperty("fetchThreads", "1").trim());
+			int fetchMaxPerHost = Integer.parseInt(prop.getProperty("fetchMaxPerHost", "1").trim());
+			double fetchRequestsPerSecond = Double.parseDouble(prop.getProperty("fetchRequestsPerSecond", "0").trim());
+			String fusionBackend = prop.getProperty("fusionBackend", "jena").trim();
+			//local cache of the RDF data
+			RDFCacheStore rdfCache = RDFCacheStore.open(prop.getProperty("rdfCacheBackend", "files"), 
+					prop.getProperty("rdfCacheFormat", "n3"), rdfData);
+			//parsed RDF data kept in memory for the document (or the whole run)
+			String rdfModelCacheScope = prop.getProperty("rdfModelCache", "none").trim();
+			RDFModelCache rdfModelCache = null;
+			if (!rdfModelCacheScope.equalsIgnoreCase("none")) {
+				rdfModelCache = new RDFModelCache(rdfCache, 
+						Long.parseLong(prop.getProperty("rdfModelCacheTriples", "2000000").trim()));
+				rdfCache = rdfModelCache;
+			}
 			
 			//produces visualization data, skips NEL
 			if (argsMap.containsKey("produceData4Visu")) {
@@ -128,20 +238,22 @@ public class MainNELApp {
 				if (annotationTag.toLowerCase().startsWith("placename")) {
 					//reads TEI, gets toponyms and retrieve RDF
 					Map<String, Map<String, String>> toponyms = EnrichmentHandler.readTEI(argsMap.get("tei"),
-							propertyTagRef,	xpathExpresion, annotationTag, rdfData);
+							propertyTagRef,	xpathExpresion, annotationTag, rdfCache);
 					//attribute geo-coordinates
-					toponyms = GeodataGeneration.assignGeoCoordinates(toponyms, argsMap.get("propsFile"), rdfData);
+					toponyms = GeodataGeneration.assignGeoCoordinates(toponyms, argsMap.get("propsFile"), rdfCache);
 					//produces the GeoJson file
 					EnrichmentHandler.toJson(toponyms, argsMap.get("produceData4Visu"));					
+					rdfCache.close();
 					return;
 				} else if (annotationTag.toLowerCase().startsWith("persname")) {
 					// e.g: output\thibaudet_reflexions-outV3-enrichment.xml output\authorInformation.json bnf config\authors.properties ref_auto
 					//reads TEI, gets authors and retrieve RDF
-					Map<String, Map<String, String>> authors = EnrichmentHandler.readTEI(argsMap.get("tei"), propertyTagRef, xpathExpresion, annotationTag, rdfData);
+					Map<String, Map<String, String>> authors = EnrichmentHandler.readTEI(argsMap.get("tei"), propertyTagRef, xpathExpresion, annotationTag, rdfCache);
 					//attribute pics
-					authors = AuthorsEnrichment.assignAuthorsPropValue(authors,  argsMap.get("propsFile"), rdfData);
+					authors = AuthorsEnrichment.assignAuthorsPropValue(authors,  argsMap.get("propsFile"), rdfCache);
 					//produces the GeoJson file
 					EnrichmentHandler.toJson(authors, argsMap.get("produceData4Visu")); //TODO here, change to JSON instead GeoJson
+					rdfCache.close();
 					return;
 				} else {
 					System.out.println("Set appropriate value to the namedEntityTag property in the Reden configuration file");
@@ -160,6 +272,9 @@ public class MainNELApp {
 			if (argsMap.containsKey("relsFile")) {
 				relsFile = new File(argsMap.get("relsFile"));
 			}
+			//weights of the relations, read once
+			PredicateProfile predicateProfile = PredicateProfile.load(relsFile, 
+					Boolean.parseBoolean(prop.getProperty("onlyListedPredicates", "false").trim()));
 			
 			//if output directory is parameter
 			String outDir = "";
@@ -170,11 +285,20 @@ public class MainNELApp {
 			}
 						
 			// we create the indexed dictionary in any case 
-			if (argsMap.containsKey("createIndex") || !new File(indexDir.trim()).exists()) {
-				logger.info("(Re-)create index");
+			// (-createIndex rebuilds it from scratch, -updateIndex re-indexes the changed dictionary files)
+			boolean updateIndex = argsMap.containsKey("updateIndex") && !argsMap.containsKey("createIndex");
+			if (useindex.equalsIgnoreCase("fst")) {
+				if (argsMap.containsKey("createIndex") || argsMap.containsKey("updateIndex") 
+						|| !DicoFST.exists(indexDir.split(",")[0])) {
+					logger.info("(Re-)create FST dictionary"); //no incremental update of the FST
+					DicoFST.build(indexDir.split(",")[0].trim(), nameMainFolderDico.split(",")[0].trim());
+				}
+			} else if (argsMap.containsKey("createIndex") || updateIndex || !new File(indexDir.trim()).exists()) {
+				logger.info(updateIndex ? "Update index" : "(Re-)create index");
 				int ind = 0;
 				new File(indexDir.trim()).mkdirs(); 
-				DicoProcessingNEL.createIndex(indexDir, nameMainFolderDico.split(",")[ind].trim(), "nameForm");
+				DicoProcessingNEL.createIndex(indexDir, nameMainFolderDico.split(",")[ind].trim(), "nameForm",
+						indexThreads, indexRAMBufferMB, updateIndex);
 			}	
 			
 			int countMention = 0;
@@ -198,9 +322,30 @@ public class MainNELApp {
 				System.out.println("Input neither file nor folder");
 			}
 
+			//the dictionary indexes are opened once and shared by all the lookups of the run
+			DicoLookupService dicoLookup = new DicoLookupService(useindex.equalsIgnoreCase("fst"));
+			//candidate sets of the names already resolved, for the whole run (all TEI files)
+			CandidateCache candidateCache = new CandidateCache(dicoCacheSize);
+			//downloads of RDF data (when the network is available)
+			RDFFetcher rdfFetcher = new RDFFetcher(fetchThreads, fetchMaxPerHost, fetchRequestsPerSecond, 
+					FailureLedger.load(prop));
+			//CONSTRUCT queries instead of dereferencing the URIs of the LD sets having a SPARQL endpoint
+			rdfFetcher.setSparqlRetriever(SparqlRDFRetriever.parse(prop.getProperty("sparqlEndpoints"), 
+					Integer.parseInt(prop.getProperty("sparqlChunkSize", "50").trim())));
+			//equivalent resources precomputed by -buildSameAsClosure
+			SameAsClosure sameAsClosure = null;
+			String sameAsClosureFile = prop.getProperty("sameAsClosureFile", "").trim();
+			if (!sameAsClosureFile.isEmpty()) {
+				if (new File(sameAsClosureFile).exists()) {
+					sameAsClosure = SameAsClosure.open(new File(sameAsClosureFile));
+				} else {
+					logger.info("sameAs closure " + sameAsClosureFile + " not found, run -buildSameAsClosure");
+				}
+			}
+			
 			//NEL evaluation information
-			List<Map<String, List<List<String>>>> allMentionsWithUrisPerContextinText =
-					new ArrayList<Map<String, List<List<String>>>>();
+			List<Map<String, CandidateSet>> allMentionsWithUrisPerContextinText =
+					new ArrayList<Map<String, CandidateSet>>();
 			
 			for (int j = 0; j < files.size(); j++) {
 				
@@ -219,20 +364,22 @@ public class MainNELApp {
 				
 				org.w3c.dom.Document doc = b.parse(new FileInputStream(files
 						.get(j)));
+				//int IDs (and decoded forms) of the URIs and literals, for the current TEI file only
+				UriRegistry uriRegistry = new UriRegistry();
 				XPath xPath = XPathFactory.newInstance().newXPath();
 				NodeList nodes = (NodeList) xPath.evaluate(
 						xpathExpresion,
 						doc.getDocumentElement(), XPathConstants.NODESET);
 				
 				for (int i = 0; i < nodes.getLength(); ++i) {
-					Map<String, List<List<String>>> allMentionsWithURIs = new HashMap<String, List<List<String>>>();
+					Map<String, CandidateSet> allMentionsWithURIs = new HashMap<String, CandidateSet>();
 					List<String> allAnnotationsParagraph = new ArrayList<String>();
 					
 					Element e = (Element) nodes.item(i);
 					int ind = 0;
 					for (String annoTag : annotationTag.split(",")) {
 						List<String> annotationsParagraph = new ArrayList<String>();
-						Map<String, List<List<String>>> mentionsWithURIs = new HashMap<String, List<List<String>>>();
+						Map<String, CandidateSet> mentionsWithURIs = new HashMap<String, CandidateSet>();
 						NodeList nodesChild = (NodeList) xPath.evaluate(".//"
 								+ annoTag, e, XPathConstants.NODESET);
 						for (int k = 0; k < nodesChild.getLength(); ++k) {
@@ -244,10 +391,10 @@ public class MainNELApp {
 						logger.info("processing text portion according to chosen context #"
 							+ countParagraph);
 						// look for URIs in dictionary
-						if (useindex.equalsIgnoreCase("true")) { // version with
+						if (useindex.equalsIgnoreCase("true") || useindex.equalsIgnoreCase("fst")) { // version with
 																// index
 							mentionsWithURIs = DicoProcessingNEL.retrieveMentionsURIsFromDicoWithIndex(
-								cl, annotationsParagraph, indexDir.split(",")[ind].trim());
+								cl, annotationsParagraph, indexDir.split(",")[ind].trim(), dicoLookup, candidateCache);
 						} else {
 							//DEPRECATED: mentionsWithURIs = DicoProcessingNEL.retrieveMentionsURIsFromDico(
 							//		nameMainFolderDico, cl, annotationsParagraph);
@@ -277,34 +424,53 @@ public class MainNELApp {
 						
 						//download base RDF data NEW VERSION
 						if (kBsLocalNoNetwork.equalsIgnoreCase("false"))
-							GraphHandlerNEL.retrieveBaseRDFData(rdfData, allMentionsWithURIs, baseUris);						
-						
-						//load base model (for minimizing possible errors, we separate both steps)
-						Model model = GraphHandlerNEL.loadBaseRDFModel(rdfData, allMentionsWithURIs, baseUris);
-						
-						if (model != null) {
+							GraphHandlerNEL.retrieveBaseRDFData(rdfCache, allMentionsWithURIs, baseUris, uriRegistry, rdfFetcher);						
 						
+						SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph = null;
+						if (fusionBackend.equalsIgnoreCase("stream")) {
+							//the RDF data is streamed into the graph, no model is built
+							graph = StreamingGraphFusion.fuse(rdfCache, allMentionsWithURIs, baseUris, crawlSameAs, 
+									sameAsproperty, predicateProfile, kBsLocalNoNetwork, uriRegistry, rdfFetcher, sameAsClosure);
+						} else if (fusionBackend.equalsIgnoreCase("index")) {
+							//the RDF data is streamed into a subject index, no model is built
 							Map<String,Set<String>> baseURIsAndEquivalentURIs = new HashMap<String,Set<String>>();
+							SubjectTripleIndex tripleIndex = GraphHandlerNEL.loadRDFIndex(rdfCache, allMentionsWithURIs, 
+									baseUris, crawlSameAs, sameAsproperty, baseURIsAndEquivalentURIs, kBsLocalNoNetwork, 
+									predicateProfile, uriRegistry, rdfFetcher, sameAsClosure);
+							graph = GraphHandlerNEL.fuseRDFGraphsIntoJGTGraph(
+									null, allMentionsWithURIs, predicateProfile, crawlSameAs, sameAsproperty, 
+									baseURIsAndEquivalentURIs, baseUris, uriRegistry, tripleIndex);
+						} else {
+							//load base model (for minimizing possible errors, we separate both steps)
+							Model model = GraphHandlerNEL.loadBaseRDFModel(rdfCache, allMentionsWithURIs, baseUris, uriRegistry);
 							
-							//download RDF data via sameAs links and loads them into memory
-							model = GraphHandlerNEL.retrieveAndLoadSameAsRDFData(model, rdfData, allMentionsWithURIs, 
-									baseUris, crawlSameAs, sameAsproperty, baseURIsAndEquivalentURIs, kBsLocalNoNetwork);
+							if (model != null) {
 							
-							SimpleDirectedWeightedGraph<String, LabeledEdge> graph =
-									GraphHandlerNEL.fuseRDFGraphsIntoJGTGraph(
-									model, allMentionsWithURIs, relsFile, crawlSameAs, sameAsproperty, 
-									baseURIsAndEquivalentURIs, baseUris);
+								Map<String,Set<String>> baseURIsAndEquivalentURIs = new HashMap<String,Set<String>>();
+								
+								//download RDF data via sameAs links and loads them into memory
+								model = GraphHandlerNEL.retrieveAndLoadSameAsRDFData(model, rdfCache, allMentionsWithURIs, 
+										baseUris, crawlSameAs, sameAsproperty, baseURIsAndEquivalentURIs, kBsLocalNoNetwork, uriRegistry, rdfFetcher, sameAsClosure);
+								
+								graph = GraphHandlerNEL.fuseRDFGraphsIntoJGTGraph(
+										model, allMentionsWithURIs, predicateProfile, crawlSameAs, sameAsproperty, 
+										baseURIsAndEquivalentURIs, baseUris, uriRegistry, null);
+							}
+						}
+						
+						if (graph != null) {
 							
 							// Simplify graph, compute centrality, choose the higher score
 							Map<String, Double> choosenScoresperMention = new HashMap<String, Double>();
 							
 							// create inverted index
-							Map<String, String> invertedIndex = DicoProcessingNEL.buildInvertedIndex(allMentionsWithURIs);
+							Map<Integer, String> invertedIndex = DicoProcessingNEL.buildInvertedIndex(allMentionsWithURIs, uriRegistry);
 							
 							Map<String, String> choosenUris = CentralityHandler.simplifyGraphsAndCalculateCentrality(
 									graph, allMentionsWithURIs, allAnnotationsParagraph,
 									baseUris, invertedIndex, measure, preferedURI, files
-									.get(j).getName(), countParagraph, writerGraph, edgeFrequenceByLabel, choosenScoresperMention); 
+									.get(j).getName(), countParagraph, writerGraph, edgeFrequenceByLabel, choosenScoresperMention, uriRegistry,
+									centralityOptions); 
 							
 							// write results in TEI
 							if (choosenUris != null) {
@@ -339,7 +505,15 @@ public class MainNELApp {
 				ResultsAndEvaluationNEL.printRelationFrequency(edgeFrequenceByLabel, files.get(j).getName(), outDir);
 				writerGraph.close();
 				ambigF.close();
+				if (rdfModelCache != null && rdfModelCacheScope.equalsIgnoreCase("document")) {
+					rdfModelCache.logStatistics();
+					rdfModelCache.clear();
+				}
 			}
+			dicoLookup.close();
+			rdfFetcher.shutdown();
+			rdfCache.close();
+			candidateCache.logStatistics();
 			Date endMain = new Date();
 			logger.info("Global Time: "
 					+ (endMain.getTime() - startMain.getTime()) / 60 + "secs");
@@ -389,6 +563,8 @@ public class MainNELApp {
 				argMap.put("printEval", "true");				
 			} else if (argA.equals("-createIndex")) {
 				argMap.put("createIndex", "true");
+			} else if (argA.equals("-updateIndex")) {
+				argMap.put("updateIndex", "true");
 			} else if (argA.startsWith("-relsFile")) {
 				argMap.put("relsFile", argA.split("=")[1].trim());
 			} else if (argA.startsWith("-outDir")) {
@@ -399,6 +575,16 @@ public class MainNELApp {
 				argMap.put("createDico", argA.split("=")[1].trim());
 			} else if (argA.startsWith("-propsFile")) {
 				argMap.put("propsFile", argA.split("=")[1].trim());
+			} else if (argA.equals("-importRDFCache")) {
+				argMap.put("importRDFCache", "true");
+			} else if (argA.equals("-convertRDFCache")) {
+				argMap.put("convertRDFCache", "true");
+			} else if (argA.equals("-listFetchFailures")) {
+				argMap.put("listFetchFailures", "true");
+			} else if (argA.startsWith("-importDump")) {
+				argMap.put("importDump", argA.split("=")[1].trim());
+			} else if (argA.equals("-buildSameAsClosure")) {
+				argMap.put("buildSameAsClosure", "true");
 			} 
 		}		
 		return argMap;		
@@ -416,7 +602,7 @@ public class MainNELApp {
 	 * @return whether the conditions are fulfilled or not
 	 */
 	public static String checkConditionsToNEL(
-			Map<String, List<List<String>>> mentionsWithURIs,
+			Map<String, CandidateSet> mentionsWithURIs,
 			List<String> annotationsParagraph) {
 		if (annotationsParagraph.size() == 0) {
 			return "NoMentionsAnnotated";
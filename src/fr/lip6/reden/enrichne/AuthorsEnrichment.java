@@ -1,6 +1,5 @@
 package fr.lip6.reden.enrichne;
 
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,7 +12,7 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 
-import fr.lip6.reden.nelinker.Util;
+import fr.lip6.reden.nelinker.RDFCacheStore;
 
 /**
  * Auxiliary class to retrieve author's pics provided by LD sources 
@@ -25,8 +24,9 @@ public class AuthorsEnrichment {
 
 	/**
 	 * Assigns author's pic from the RDF data. 
+	 * @param rdfCache, the local RDF cache
 	 */
-	public static Map<String, Map<String, String>> assignAuthorsPropValue(Map<String, Map<String, String>> authors, String rdfPropertiesFile, String datadir) {
+	public static Map<String, Map<String, String>> assignAuthorsPropValue(Map<String, Map<String, String>> authors, String rdfPropertiesFile, RDFCacheStore rdfCache) {
 		try {
 			//then, we search for foaf:depiction property values from the RDF data for these authors
 			//read property file
@@ -41,10 +41,9 @@ public class AuthorsEnrichment {
 			
 			for (String author : authors.keySet()) {
 				
-				if (new File(datadir + "/file" + Util.replaceNonAlphabeticCharacters(author) + ".n3").exists()) {
+				Model model = ModelFactory.createDefaultModel();
+				if (rdfCache.read(RDFCacheStore.key(author), model)) {
 					
-					Model model = ModelFactory.createDefaultModel();
-					model.read(datadir + "/file" + Util.replaceNonAlphabeticCharacters(author) + ".n3");					
 					Resource res = model.getResource(author);
 					RDFNode picN = EnrichmentHandler.getValFromProperty(model, res, picNameList, "http://commons.wikimedia.org");
 					if (picN != null) {
@@ -63,7 +62,7 @@ public class AuthorsEnrichment {
 						authors.put(author, m); //update
 					}
 				} else {
-					System.out.println("RDF file is missing: "+datadir + "/file" + Util.replaceNonAlphabeticCharacters(author) + ".n3");
+					System.out.println("RDF data is missing: " + author);
 				}							
 			}
 		} catch (FileNotFoundException e1) {
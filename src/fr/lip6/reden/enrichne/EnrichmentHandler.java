@@ -34,6 +34,7 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 
 import fr.lip6.reden.nelinker.GraphHandlerNEL;
+import fr.lip6.reden.nelinker.RDFCacheStore;
 
 /**
  * Reads URIs within the input TEI file and extracts intermediary information useful for visualization.
@@ -46,10 +47,11 @@ public class EnrichmentHandler {
 	
 	/**
 	 * Read toponyms URIs in TEI file and retrieve if necessary the associated RDF data.
+	 * @param rdfCache, the local RDF cache
 	 * @return
 	 */
 	public static Map<String, Map<String, String>> readTEI(String teiAnnotatedFile,
-			String xmlTeiIDAttr, String contextSize, String annotTag, String datadir) {
+			String xmlTeiIDAttr, String contextSize, String annotTag, RDFCacheStore rdfCache) {
 		
 		Map<String, Map<String, String>> output = new HashMap<String, Map<String, String>>();
 		
@@ -82,7 +84,7 @@ public class EnrichmentHandler {
 							Map<String, String> m = new HashMap<String, String>();
 							m.put("name", entityName);							
 							m.put("occurrences", "1");							
-							GraphHandlerNEL.retrieveRDF(uri, datadir);
+							GraphHandlerNEL.retrieveRDF(uri, rdfCache);
 							m.put("theuri", uri);
 							output.put(uri, m);							
 						} else { //already seen this uri, count it
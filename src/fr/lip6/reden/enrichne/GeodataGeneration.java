@@ -1,6 +1,5 @@
 package fr.lip6.reden.enrichne;
 
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,7 +12,7 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 
-import fr.lip6.reden.nelinker.Util;
+import fr.lip6.reden.nelinker.RDFCacheStore;
 
 /**
  * Auxiliary class to retrieve geo-coordinates provided by LD sources 
@@ -27,10 +26,11 @@ public class GeodataGeneration {
 	 * Assigns geographic coordinates from the RDF data. 
 	 * @param toponyms
 	 * @param latLongPropertyFile
+	 * @param rdfCache, the local RDF cache
 	 * @return
 	 */
 	public static Map<String, Map<String, String>> assignGeoCoordinates(Map<String, Map<String, String>> toponyms, 
-			String latLongPropertyFile, String datadir) {
+			String latLongPropertyFile, RDFCacheStore rdfCache) {
 		try {
 			//then, we search for Lat/Lon property values from the RDF data for these toponyms
 			//read property file
@@ -43,10 +43,9 @@ public class GeodataGeneration {
 			for (String placeOrigName : toponyms.keySet()) {
 				
 				//rdf data have already been downloaded
-				if (new File(datadir + "/file" + Util.replaceNonAlphabeticCharacters(placeOrigName) + ".n3").exists()) {
+				Model model = ModelFactory.createDefaultModel();
+				if (rdfCache.read(RDFCacheStore.key(placeOrigName), model)) {
 					
-					Model model = ModelFactory.createDefaultModel();
-					model.read(datadir + "/file" + Util.replaceNonAlphabeticCharacters(placeOrigName) + ".n3");					
 					Resource res = model.getResource(placeOrigName);
 					RDFNode latOb = EnrichmentHandler.getValFromProperty(model, res, propLatNameList, null);
 					RDFNode lonOb = EnrichmentHandler.getValFromProperty(model, res, propLonNameList, null);
@@ -60,7 +59,7 @@ public class GeodataGeneration {
 						toponyms.put(placeOrigName, m); //update
 					}					
 				} else {
-					System.out.println("RDF file is missing: "+datadir + "/file" + placeOrigName.hashCode() + ".n3");
+					System.out.println("RDF data is missing: " + placeOrigName);
 				}							
 			}
 		} catch (FileNotFoundException e1) {
@@ -0,0 +1,93 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Betweenness centrality estimated from a sample of source vertices (Brandes and
+ * Pich): the dependencies of k sources drawn at random without replacement are summed
+ * (see ParallelBetweennessCentrality), scaled by n / k and min-max normalized as the
+ * exact scores. The dependency of a source on a vertex is between 0 and n - 2, so by
+ * Hoeffding's inequality (which also holds without replacement) and a union bound over
+ * the n vertices, with probability 1 - delta every raw score is within
+ * epsilon * n * (n - 2) of the exact one, where
+ * epsilon = sqrt(ln(2n / delta) / (2k)). The number of sources is either given, or
+ * computed from the wanted epsilon and delta. The sample is drawn with a fixed seed, so
+ * the scores are the same from one run to the other.
+ *
+ * @author Brando & Frontini
+ */
+public class ApproxBetweennessCentrality {
+
+	private static Logger logger = Logger.getLogger(ApproxBetweennessCentrality.class);
+
+	/**
+	 * Number of sources needed for an error bound.
+	 * @param n, number of vertices
+	 * @param epsilon, the error, as a fraction of n * (n - 2)
+	 * @param delta, probability that the error is exceeded
+	 * @return the number of sources
+	 */
+	public static int samples(int n, double epsilon, double delta) {
+		double k = Math.ceil(Math.log(2.0 * n / delta) / (2 * epsilon * epsilon));
+		return (int) Math.min(Integer.MAX_VALUE, k);
+	}
+
+	/**
+	 * Error bound of a sample.
+	 * @param n, number of vertices
+	 * @param k, number of sources
+	 * @param delta, probability that the error is exceeded
+	 * @return the error, as a fraction of n * (n - 2)
+	 */
+	public static double epsilon(int n, int k, double delta) {
+		return Math.sqrt(Math.log(2.0 * n / delta) / (2.0 * k));
+	}
+
+	/**
+	 * Estimated betweenness centrality, min-max normalized.
+	 * @param graph, the snapshot
+	 * @param samples, number of sources (0 to compute it from epsilon and delta)
+	 * @param epsilon, the wanted error, as a fraction of n * (n - 2)
+	 * @param delta, probability that the error is exceeded
+	 * @param seed, seed of the sample
+	 * @param pool, the pool running the accumulations
+	 * @return the scores, by position of the vertices in the snapshot
+	 */
+	public static double[] betweenness(CsrGraph graph, int samples, double epsilon, double delta, long seed,
+			ForkJoinPool pool) {
+		int n = graph.size();
+		int k = samples > 0 ? samples : samples(n, epsilon, delta);
+		if (k >= n) {
+			logger.info("betweenness sample of " + k + " sources for " + n + " vertices: exact scores");
+			return ParallelBetweennessCentrality.betweenness(graph, pool);
+		}
+		// k sources without replacement (partial Fisher-Yates shuffle)
+		int[] vertices = new int[n];
+		for (int v = 0; v < n; v++) {
+			vertices[v] = v;
+		}
+		Random random = new Random(seed);
+		for (int i = 0; i < k; i++) {
+			int j = i + random.nextInt(n - i);
+			int tmp = vertices[i];
+			vertices[i] = vertices[j];
+			vertices[j] = tmp;
+		}
+		int[] sources = Arrays.copyOf(vertices, k);
+		Arrays.sort(sources);
+		double[] scores = ParallelBetweennessCentrality.accumulate(graph, sources, pool);
+		double scale = (double) n / k;
+		for (int v = 0; v < n; v++) {
+			scores[v] *= scale;
+		}
+		double error = epsilon(n, k, delta);
+		logger.info("betweenness estimated from " + k + " of " + n + " sources: error at most " + error
+				+ " * n(n-2) = " + error * n * (n - 2) + " on the raw scores with probability " + (1 - delta));
+		NativeCentrality.minMaxNormalize(scores);
+		return scores;
+	}
+}
@@ -0,0 +1,235 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Compact binary encoding of an RDF description (rdfCacheFormat=binary), loaded
+ * without any text parser. A description is a dictionary of its distinct terms
+ * followed by its triples, every triple being three variable-length indexes
+ * in the dictionary.
+ *
+ * @author Brando & Frontini
+ */
+public class BinaryRDFCodec {
+
+	/** first bytes of an encoded description (never valid N3) */
+	private static final byte[] MAGIC = { 0, 'R', 'D', 'B' };
+
+	private static final int VERSION = 1;
+
+	private static final int URI = 0;
+
+	private static final int BLANK = 1;
+
+	private static final int LANG_LITERAL = 2;
+
+	private static final int TYPED_LITERAL = 3;
+
+	/**
+	 * Whether the content is an encoded description.
+	 * @param data, the content
+	 * @return true if binary
+	 */
+	public static boolean isBinary(byte[] data) {
+		if (data.length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (data[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes all the triples of a graph.
+	 * @param graph, the graph
+	 * @return the encoded description
+	 */
+	public static byte[] encode(Graph graph) {
+		Map<Node, Integer> ids = new HashMap<Node, Integer>();
+		List<Node> terms = new ArrayList<Node>();
+		List<int[]> triples = new ArrayList<int[]>();
+		ExtendedIterator<Triple> it = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				triples.add(new int[] { termId(t.getSubject(), ids, terms),
+						termId(t.getPredicate(), ids, terms), termId(t.getObject(), ids, terms) });
+			}
+		} finally {
+			it.close();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(MAGIC, 0, MAGIC.length);
+		writeVInt(out, VERSION);
+		writeVInt(out, terms.size());
+		for (Node term : terms) {
+			if (term.isURI()) {
+				out.write(URI);
+				writeString(out, term.getURI());
+			} else if (term.isBlank()) {
+				out.write(BLANK);
+			} else if (!term.getLiteralLanguage().isEmpty()) {
+				out.write(LANG_LITERAL);
+				writeString(out, term.getLiteralLexicalForm());
+				writeString(out, term.getLiteralLanguage());
+			} else {
+				out.write(TYPED_LITERAL);
+				writeString(out, term.getLiteralLexicalForm());
+				writeString(out, term.getLiteralDatatypeURI());
+			}
+		}
+		writeVInt(out, triples.size());
+		for (int[] t : triples) {
+			writeVInt(out, t[0]);
+			writeVInt(out, t[1]);
+			writeVInt(out, t[2]);
+		}
+		return out.toByteArray();
+	}
+
+	private static int termId(Node node, Map<Node, Integer> ids, List<Node> terms) {
+		Integer id = ids.get(node);
+		if (id == null) {
+			id = terms.size();
+			ids.put(node, id);
+			terms.add(node);
+		}
+		return id;
+	}
+
+	/**
+	 * Adds the triples of an encoded description to a graph (blank nodes are new
+	 * blank nodes, as when parsing).
+	 * @param data, the encoded description
+	 * @param graph, the graph
+	 * @throws IOException if the content is not a valid description
+	 */
+	public static void decode(byte[] data, Graph graph) throws IOException {
+		decode(data, StreamRDFLib.graph(graph));
+	}
+
+	/**
+	 * Sends the triples of an encoded description to a stream. The whole description
+	 * is checked first, so that nothing is sent when it is not valid.
+	 * @param data, the encoded description
+	 * @param sink, receives the triples
+	 * @throws IOException if the content is not a valid description
+	 */
+	public static void decode(byte[] data, StreamRDF sink) throws IOException {
+		if (!isBinary(data)) {
+			throw new IOException("not a binary RDF description");
+		}
+		int[] pos = { MAGIC.length };
+		int version = readVInt(data, pos);
+		if (version != VERSION) {
+			throw new IOException("unsupported binary RDF version " + version);
+		}
+		int count = readVInt(data, pos);
+		if (count > data.length - pos[0]) { //at least one byte per term
+			throw new IOException("bad number of terms " + count);
+		}
+		Node[] terms = new Node[count];
+		TypeMapper types = TypeMapper.getInstance();
+		for (int i = 0; i < terms.length; i++) {
+			int kind = readByte(data, pos);
+			if (kind == URI) {
+				terms[i] = NodeFactory.createURI(readString(data, pos));
+			} else if (kind == BLANK) {
+				terms[i] = NodeFactory.createBlankNode();
+			} else if (kind == LANG_LITERAL) {
+				String lex = readString(data, pos);
+				terms[i] = NodeFactory.createLiteral(lex, readString(data, pos));
+			} else if (kind == TYPED_LITERAL) {
+				String lex = readString(data, pos);
+				terms[i] = NodeFactory.createLiteral(lex, types.getSafeTypeByName(readString(data, pos)));
+			} else {
+				throw new IOException("bad term kind " + kind);
+			}
+		}
+		int size = readVInt(data, pos);
+		int triples = pos[0];
+		for (int i = 0; i < 3 * size; i++) {
+			readTerm(data, pos, terms);
+		}
+		pos[0] = triples;
+		for (int i = 0; i < size; i++) {
+			Node s = readTerm(data, pos, terms);
+			Node p = readTerm(data, pos, terms);
+			Node o = readTerm(data, pos, terms);
+			sink.triple(Triple.create(s, p, o));
+		}
+	}
+
+	private static void writeVInt(ByteArrayOutputStream out, int i) {
+		while ((i & ~0x7F) != 0) {
+			out.write((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		out.write(i);
+	}
+
+	private static int readByte(byte[] data, int[] pos) throws IOException {
+		if (pos[0] >= data.length) {
+			throw new IOException("truncated binary RDF description");
+		}
+		return data[pos[0]++];
+	}
+
+	private static int readVInt(byte[] data, int[] pos) throws IOException {
+		int b = readByte(data, pos);
+		int i = b & 0x7F;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+			if (shift > 28) {
+				throw new IOException("bad variable-length integer at " + pos[0]);
+			}
+			b = readByte(data, pos);
+			i |= (b & 0x7F) << shift;
+		}
+		if (i < 0) {
+			throw new IOException("bad variable-length integer at " + pos[0]);
+		}
+		return i;
+	}
+
+	private static Node readTerm(byte[] data, int[] pos, Node[] terms) throws IOException {
+		int id = readVInt(data, pos);
+		if (id >= terms.length) {
+			throw new IOException("bad term " + id + " of " + terms.length);
+		}
+		return terms[id];
+	}
+
+	private static void writeString(ByteArrayOutputStream out, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVInt(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private static String readString(byte[] data, int[] pos) throws IOException {
+		int length = readVInt(data, pos);
+		if (length < 0 || length > data.length - pos[0]) {
+			throw new IOException("truncated binary RDF description: string of " + length + " bytes at " + pos[0]);
+		}
+		String s = new String(data, pos[0], length, StandardCharsets.UTF_8);
+		pos[0] += length;
+		return s;
+	}
+}
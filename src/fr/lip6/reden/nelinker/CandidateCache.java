@@ -0,0 +1,105 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded LRU cache of the candidate sets resolved from the dictionary, keyed by
+ * (index folder, normalized mention). It lives for the whole run so that names
+ * repeated across paragraphs and TEI files are looked up only once. Names without
+ * candidates are cached as well (empty candidate sets).
+ *
+ * @author Brando & Frontini
+ */
+public class CandidateCache {
+
+	private static Logger logger = Logger.getLogger(CandidateCache.class);
+
+	private final int maxSize;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	private final LinkedHashMap<String, CandidateSet> entries;
+
+	/**
+	 * @param maxSize, maximum number of cached names
+	 */
+	@SuppressWarnings("serial")
+	public CandidateCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, CandidateSet>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CandidateSet> eldest) {
+				if (size() > CandidateCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	private static String key(String indexDir, String normalizedMention) {
+		return indexDir.trim() + "\u0000" + normalizedMention;
+	}
+
+	/**
+	 * Get the cached candidate sets of a name.
+	 * @param indexDir, folder of the dictionary index
+	 * @param normalizedMention, the normalized mention
+	 * @return the candidate sets (empty if the name is not in the dictionary) or null if not cached
+	 */
+	public synchronized CandidateSet get(String indexDir, String normalizedMention) {
+		CandidateSet candidates = entries.get(key(indexDir, normalizedMention));
+		if (candidates == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return candidates;
+	}
+
+	/**
+	 * Caches the candidate sets of a name.
+	 * @param indexDir, folder of the dictionary index
+	 * @param normalizedMention, the normalized mention
+	 * @param candidates, the candidate sets (read-only, see CandidateSet.readOnly)
+	 */
+	public synchronized void put(String indexDir, String normalizedMention, CandidateSet candidates) {
+		if (maxSize > 0) {
+			entries.put(key(indexDir, normalizedMention), candidates);
+		}
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Logs the counters of the cache.
+	 */
+	public synchronized void logStatistics() {
+		long total = hits + misses;
+		logger.info("Candidate cache: " + entries.size() + "/" + maxSize + " entries, " + hits + " hits, "
+				+ misses + " misses, " + evictions + " evictions"
+				+ (total > 0 ? " (hit ratio " + (100 * hits / total) + "%)" : ""));
+	}
+}
@@ -0,0 +1,71 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The candidates of a mention: every candidate is the list of URIs of one
+ * dictionary entry (the same individual in several LD sets). Candidates are kept
+ * in a hash-based set preserving the order of the dictionary, so that identical
+ * URI lists are stored only once.
+ *
+ * @author Brando & Frontini
+ */
+public class CandidateSet extends AbstractSet<List<String>> {
+
+	private final LinkedHashSet<List<String>> candidates = new LinkedHashSet<List<String>>();
+
+	private boolean readOnly = false;
+
+	/**
+	 * Adds a candidate if an identical URI list is not already there.
+	 * @param uris, the URIs of the candidate
+	 * @return true if the candidate was added
+	 */
+	@Override
+	public boolean add(List<String> uris) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("read-only candidate set");
+		}
+		return candidates.add(Collections.unmodifiableList(new ArrayList<String>(uris)));
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return candidates.contains(o);
+	}
+
+	@Override
+	public Iterator<List<String>> iterator() {
+		if (readOnly) {
+			return Collections.unmodifiableSet(candidates).iterator();
+		}
+		return candidates.iterator();
+	}
+
+	@Override
+	public int size() {
+		return candidates.size();
+	}
+
+	/**
+	 * The first candidate, in dictionary order.
+	 * @return the URIs of the first candidate or null if there is none
+	 */
+	public List<String> first() {
+		return candidates.isEmpty() ? null : candidates.iterator().next();
+	}
+
+	/**
+	 * Makes the set read-only, e.g. before sharing it between paragraphs.
+	 * @return this set
+	 */
+	public CandidateSet readOnly() {
+		readOnly = true;
+		return this;
+	}
+}
@@ -0,0 +1,173 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Canonical form of the URIs of the cached descriptions: the percent-encoded UTF-8
+ * characters are decoded (e.g. old DBpedia URIs in ASCII-US), except the characters
+ * which cannot be written in an IRI or which change its meaning (spaces, delimiters,
+ * '%', '+', ...), whose escapes are kept in upper case. All the encoding variants of a
+ * URI have the same canonical form, and decoding it (see Util.decompose) gives the same
+ * URI as decoding any of its variants. Descriptions are canonicalized when they are
+ * written in the RDF cache (see RDFCacheStore.write) and when they are read from it (for
+ * the caches which have not been converted), so that the graph fusion finds the triples
+ * of a resource with a single lookup of its canonical form (see UriRegistry.canonicalId).
+ *
+ * @author Brando & Frontini
+ */
+public class CanonicalURIs {
+
+	/** characters kept percent-encoded */
+	private static final String KEPT_ENCODED = " \"<>\\^`{|}%/?#[]+";
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Canonical form of a URI.
+	 * @param uri, the URI (other terms are returned unchanged)
+	 * @return the canonical URI
+	 */
+	public static String canonical(String uri) {
+		if (!uri.startsWith("http") || uri.indexOf('%') < 0) {
+			return uri;
+		}
+		StringBuilder sb = new StringBuilder(uri.length());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int i = 0;
+		while (i < uri.length()) {
+			if (!isEscape(uri, i)) {
+				sb.append(uri.charAt(i++));
+				continue;
+			}
+			// run of escaped bytes
+			bytes.reset();
+			while (isEscape(uri, i)) {
+				bytes.write(Integer.parseInt(uri.substring(i + 1, i + 3), 16));
+				i += 3;
+			}
+			appendDecoded(sb, bytes.toByteArray());
+		}
+		return sb.toString();
+	}
+
+	private static boolean isEscape(String s, int i) {
+		return i + 2 < s.length() && s.charAt(i) == '%'
+				&& Character.digit(s.charAt(i + 1), 16) >= 0 && Character.digit(s.charAt(i + 2), 16) >= 0;
+	}
+
+	/**
+	 * Appends decoded escaped bytes, the bytes of the characters kept encoded
+	 * and of the malformed UTF-8 sequences are appended as escapes.
+	 */
+	private static void appendDecoded(StringBuilder sb, byte[] bytes) {
+		int i = 0;
+		while (i < bytes.length) {
+			int b = bytes[i] & 0xFF;
+			int length = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 0;
+			String decoded = length > 0 ? decode(bytes, i, length) : null;
+			if (decoded == null || isKeptEncoded(decoded)) {
+				appendEscape(sb, b);
+				i++;
+			} else {
+				sb.append(decoded);
+				i += length;
+			}
+		}
+	}
+
+	private static String decode(byte[] bytes, int offset, int length) {
+		if (offset + length > bytes.length) {
+			return null;
+		}
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		try {
+			CharBuffer chars = decoder.decode(ByteBuffer.wrap(bytes, offset, length));
+			return chars.toString();
+		} catch (CharacterCodingException e) {
+			return null;
+		}
+	}
+
+	private static boolean isKeptEncoded(String decoded) {
+		if (decoded.length() != 1) {
+			return false;
+		}
+		char c = decoded.charAt(0);
+		return c < 0x20 || c == 0x7F || Character.isSpaceChar(c) || KEPT_ENCODED.indexOf(c) >= 0;
+	}
+
+	private static void appendEscape(StringBuilder sb, int b) {
+		sb.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+	}
+
+	/**
+	 * Canonical form of a node.
+	 * @param node, the node
+	 * @return the node itself if it is not a URI or if its URI is canonical
+	 */
+	static Node canonical(Node node) {
+		if (node.isURI()) {
+			String uri = node.getURI();
+			String canonical = canonical(uri);
+			if (!canonical.equals(uri)) {
+				return NodeFactory.createURI(canonical);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Canonicalizes the URIs (subjects, predicates and objects) of a description.
+	 * @param model, the description
+	 * @return the model itself if all its URIs are canonical, otherwise a new model
+	 */
+	public static Model canonicalize(Model model) {
+		Graph graph = model.getGraph();
+		List<Triple> triples = new ArrayList<Triple>();
+		boolean changed = false;
+		ExtendedIterator<Triple> it = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				Node s = canonical(t.getSubject());
+				Node p = canonical(t.getPredicate());
+				Node o = canonical(t.getObject());
+				if (s != t.getSubject() || p != t.getPredicate() || o != t.getObject()) {
+					changed = true;
+					t = Triple.create(s, p, o);
+				}
+				triples.add(t);
+			}
+		} finally {
+			it.close();
+		}
+		if (!changed) {
+			return model;
+		}
+		Model canonicalModel = ModelFactory.createDefaultModel();
+		canonicalModel.setNsPrefixes(model.getNsPrefixMap());
+		Graph canonicalGraph = canonicalModel.getGraph();
+		for (Triple t : triples) {
+			canonicalGraph.add(t);
+		}
+		return canonicalModel;
+	}
+}
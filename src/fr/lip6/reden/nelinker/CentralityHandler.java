@@ -4,6 +4,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,13 +15,6 @@ import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.apache.log4j.Logger;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 
-import dk.aaue.sna.alg.centrality.BrandesBetweennessCentrality;
-import dk.aaue.sna.alg.centrality.CentralityMeasure;
-import dk.aaue.sna.alg.centrality.CentralityResult;
-import dk.aaue.sna.alg.centrality.DegreeCentrality;
-import dk.aaue.sna.alg.centrality.EigenvectorCentrality;
-import dk.aaue.sna.alg.centrality.FreemanClosenessCentrality;
-
 /**
  * This class implements the method for graph centrality calculation.
  * 
@@ -58,36 +52,37 @@ public class CentralityHandler {
 	 * @param countParagraph, number of the current paragraph
 	 * @param writerGraph, where to write the final graph (for debugging purposes)
 	 * @param edgeFrequenceByLabel, frequency by predicate
+	 * @param registry, the IDs of the URIs (vertices of the graph)
+	 * @param options, the centrality settings
 	 * @return the chosen URIs
 	 */
 	@SuppressWarnings("rawtypes")
 	public static Map<String, String> simplifyGraphsAndCalculateCentrality(
-			SimpleDirectedWeightedGraph<String, LabeledEdge> graph,
-			Map<String, List<List<String>>> mentionsWithURIs,
+			SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph,
+			Map<String, CandidateSet> mentionsWithURIs,
 			List<String> mentionsPerParagraph, String baseURIS,
-			Map<String, String> invertedIndex, String measure,
+			Map<Integer, String> invertedIndex, String measure,
 			String preferedURI, String namefile,
 			Integer countParagraph, FileWriterWithEncoding writerGraph, 
 			Map<String, Double>edgeFrequenceByLabel, 
-			Map<String, Double> choosenScoresperMention) {
+			Map<String, Double> choosenScoresperMention, UriRegistry registry, CentralityOptions options) {
 
 		Map<String, String> choosenUris = new HashMap<String, String>();
 
 		try {
 			
-			List<String> urisColoredNodes = new ArrayList<String>();
+			BitSet urisColoredNodes = new BitSet();
 			for (String mention : mentionsPerParagraph) {
-				List<List<String>> listUrisCurrentMention = mentionsWithURIs
+				CandidateSet listUrisCurrentMention = mentionsWithURIs
 						.get(mention);
 				if (listUrisCurrentMention != null) {
 					for (List<String> listUris : listUrisCurrentMention) {
 						for (String uri : listUris) {
 							String baseURL = baseURIS.trim();
 								if (uri.contains(baseURL)) { // avoid some URI
-									urisColoredNodes.add(uri);
-									if (!urisColoredNodes
-											.contains(Util.decompose(uri)))
-										urisColoredNodes.add(Util.decompose(uri)); 
+									int id = registry.id(uri);
+									urisColoredNodes.set(id);
+									urisColoredNodes.set(registry.decodedId(id)); 
 									//the candidates
 
 								}
@@ -97,20 +92,20 @@ public class CentralityHandler {
 			}
 
 			// filtering non-interesting nodes and edges
-			List<String> vertexToDelete = new ArrayList<String>();
-			for (String vertex : graph.vertexSet()) {
-				if (!urisColoredNodes.contains(vertex)) {
+			List<Integer> vertexToDelete = new ArrayList<Integer>();
+			for (Integer vertex : graph.vertexSet()) {
+				if (!urisColoredNodes.get(vertex)) {
 					Set<String> vertexCheck = new HashSet<String>();
 
 					for (LabeledEdge edgeOfVertex : graph.edgesOf(vertex)) {
-						String vertex1 = graph.getEdgeSource(edgeOfVertex);
-						String vertex2 = graph.getEdgeTarget(edgeOfVertex);
+						Integer vertex1 = graph.getEdgeSource(edgeOfVertex);
+						Integer vertex2 = graph.getEdgeTarget(edgeOfVertex);
 						if (!vertex1.equals(vertex)
-								&& urisColoredNodes.contains(vertex1)) {
+								&& urisColoredNodes.get(vertex1)) {
 							vertexCheck.add(invertedIndex.get(vertex1));
 						}
 						if (!vertex2.equals(vertex)
-								&& urisColoredNodes.contains(vertex2)) {
+								&& urisColoredNodes.get(vertex2)) {
 							vertexCheck.add(invertedIndex.get(vertex2));
 						}
 					}
@@ -133,91 +128,74 @@ public class CentralityHandler {
 				}
 			}
 			
-			// calculate centrality
-			CentralityMeasure<String> cm = null;
+			// calculate centrality (once for the graph, see CentralityScores)
 			logger.info("Centrality measure used is " + measure);
-			if (measure.equals("DegreeCentrality")) {
-				cm = new DegreeCentrality<String, LabeledEdge>(graph);
-			} else if (measure.equals("BrandesBetweennessCentrality")) {
-				cm = new BrandesBetweennessCentrality<String, LabeledEdge>(
-						graph);
-			} else if (measure.equals("FreemanClosenessCentrality")) {
-				cm = new FreemanClosenessCentrality<String, LabeledEdge>(
-						graph);
-			} else if (measure.equals("EigenvectorCentrality")) {				
-				cm = new EigenvectorCentrality<String, LabeledEdge>(graph);
-			} else {
+			if (!CentralityScores.isMeasure(measure)) {
 				System.out.println("please provide valid centrality measure");
 				return null;
 			}
-			if (cm != null) {
-				for (String key : mentionsWithURIs.keySet()) {
-					Map<String, Double> results = new HashMap<String, Double>();
-					List<List<String>> listuris = mentionsWithURIs.get(key);
-					if (listuris != null) {
-						for (List<String> uris : listuris) {
-							for (String uri : uris) {
-								if (urisColoredNodes.contains(Util.decompose(uri))) {
-									CentralityResult<String> cr = cm
-											.calculate();
-									Double val = cr.get(Util.decompose(uri));
-									if (cr.get(Util.decompose(uri)) != null) {
-										results.put(Util.decompose(uri), val);
-									} else {
-										results.put(Util.decompose(uri), 0.0);
-									}
-								}
+			CentralityScores scores = new CentralityScores(graph, options, urisColoredNodes);
+			for (String key : mentionsWithURIs.keySet()) {
+				Map<Integer, Double> results = new HashMap<Integer, Double>();
+				CandidateSet listuris = mentionsWithURIs.get(key);
+				if (listuris != null) {
+					for (List<String> uris : listuris) {
+						for (String uri : uris) {
+							int decodedId = registry.decodedId(registry.id(uri));
+							if (urisColoredNodes.get(decodedId)) {
+								results.put(decodedId, scores.get(measure, decodedId));
 							}
 						}
 					}
-					Map<String, Double> orderedMap = Util.sortByValue(results);
-					logger.info("For mention: " + key);
-					for (String ur : orderedMap.keySet()) {
-						if (orderedMap.get(ur) != 0) {
-							logger.info("Centrality of " + ur + " is: "
-									+ orderedMap.get(ur));
-						}
+				}
+				Map<Integer, Double> orderedMap = Util.sortByValue(results);
+				logger.info("For mention: " + key);
+				for (Integer ur : orderedMap.keySet()) {
+					if (orderedMap.get(ur) != 0) {
+						logger.info("Centrality of " + registry.get(ur) + " is: "
+								+ orderedMap.get(ur));
 					}
-					// choose the highest
-					String[] o = {};
-					o = orderedMap.keySet().toArray(o);
-					if (o.length > 0) { // there are uris
-						// select preferred URI, the one defined in
-						// config.parameters
-						String selectedURI = "";
-						String correspondingMention = invertedIndex
-								.get(o[o.length - 1]);
-						List<List<String>> correspondingURIs = mentionsWithURIs
-								.get(correspondingMention);
-						for (List<String> uris : correspondingURIs) {
-							if (uris.contains(o[o.length - 1])) { // it is the
-																	// right
-																	// list
-								boolean found = false;
-								for (String uri : uris) {
-									if (preferedURI.equals("ALL")) {
-										selectedURI += uri + " ";
-										found = true;
-									} else if (uri.contains(preferedURI)) {
-										selectedURI = uri;
-										found = true;
-									}
-								}
-								if (!found) {
-									selectedURI = o[o.length - 1]; // default
-																	// URI
+				}
+				// choose the highest
+				Integer[] o = {};
+				o = orderedMap.keySet().toArray(o);
+				if (o.length > 0) { // there are uris
+					// select preferred URI, the one defined in
+					// config.parameters
+					String selectedURI = "";
+					String bestURI = registry.get(o[o.length - 1]);
+					String correspondingMention = invertedIndex
+							.get(o[o.length - 1]);
+					CandidateSet correspondingURIs = mentionsWithURIs
+							.get(correspondingMention);
+					for (List<String> uris : correspondingURIs) {
+						if (uris.contains(bestURI)) { // it is the
+																// right
+																// list
+							boolean found = false;
+							for (String uri : uris) {
+								if (preferedURI.equals("ALL")) {
+									selectedURI += uri + " ";
+									found = true;
+								} else if (uri.contains(preferedURI)) {
+									selectedURI = uri;
+									found = true;
 								}
-
 							}
+							if (!found) {
+								selectedURI = bestURI; // default
+																// URI
+							}
+
 						}
-						choosenUris.put(key, selectedURI.trim());
-						choosenScoresperMention.put(key, orderedMap.get(o[o.length - 1]));
 					}
+					choosenUris.put(key, selectedURI.trim());
+					choosenScoresperMention.put(key, orderedMap.get(o[o.length - 1]));
 				}
-				// printing graph
-				writerGraph.write("Paragraph# " + countParagraph + "\n");
-				Util.printGraph(graph, writerGraph);
-			}			
+			}
+			// printing graph
+			writerGraph.write("Paragraph# " + countParagraph + "\n");
+			Util.printGraph(graph, registry, writerGraph);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (UnsupportedEncodingException e) {
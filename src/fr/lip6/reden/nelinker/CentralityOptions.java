@@ -0,0 +1,167 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings of the centrality computation, read once from the configuration file.
+ *
+ * @author Brando & Frontini
+ */
+public class CentralityOptions {
+
+	/** whether the native measures are compared with their dk.aaue.sna counterparts */
+	private final boolean crossCheck;
+
+	/** number of threads of the parallel measures */
+	private final int threads;
+
+	/** number of sources of ApproxBetweennessCentrality (0 to use epsilon and delta) */
+	private int approxSamples = 0;
+
+	/** wanted error of ApproxBetweennessCentrality */
+	private double approxEpsilon = 0.05;
+
+	/** probability that the error of ApproxBetweennessCentrality is exceeded */
+	private double approxDelta = 0.1;
+
+	/** seed of the sample of ApproxBetweennessCentrality */
+	private long approxSeed = 1;
+
+	/** probability of following an edge in PersonalizedPageRank */
+	private double pageRankDamping = 0.85;
+
+	/** convergence tolerance of PersonalizedPageRank */
+	private double pageRankTolerance = 1e-6;
+
+	/** largest number of iterations of PersonalizedPageRank */
+	private int pageRankIterations = 100;
+
+	/** whether PersonalizedPageRank uses the local push approximation */
+	private boolean pageRankPush = false;
+
+	private ForkJoinPool pool = null;
+
+	/**
+	 * @param crossCheck, whether the native measures are compared with their dk.aaue.sna counterparts
+	 */
+	public CentralityOptions(boolean crossCheck) {
+		this(crossCheck, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param crossCheck, whether the native measures are compared with their dk.aaue.sna counterparts
+	 * @param threads, number of threads of the parallel measures
+	 */
+	public CentralityOptions(boolean crossCheck, int threads) {
+		this.crossCheck = crossCheck;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Reads the settings: centralityCrossCheck (false by default), centralityThreads
+	 * (number of processors by default), approxBetweennessSamples (0 by default),
+	 * approxBetweennessEpsilon (0.05 by default), approxBetweennessDelta (0.1 by default),
+	 * approxBetweennessSeed (1 by default), pageRankDamping (0.85 by default),
+	 * pageRankTolerance (1e-6 by default), pageRankIterations (100 by default) and
+	 * pageRankPush (false by default).
+	 * @param prop, the configuration
+	 * @return the settings
+	 */
+	public static CentralityOptions load(Properties prop) {
+		String threads = prop.getProperty("centralityThreads", "").trim();
+		CentralityOptions options = new CentralityOptions(
+				Boolean.parseBoolean(prop.getProperty("centralityCrossCheck", "false").trim()),
+				threads.isEmpty() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads));
+		options.approxSamples = Integer.parseInt(prop.getProperty("approxBetweennessSamples", "0").trim());
+		options.approxEpsilon = Double.parseDouble(prop.getProperty("approxBetweennessEpsilon", "0.05").trim());
+		options.approxDelta = Double.parseDouble(prop.getProperty("approxBetweennessDelta", "0.1").trim());
+		options.approxSeed = Long.parseLong(prop.getProperty("approxBetweennessSeed", "1").trim());
+		options.pageRankDamping = Double.parseDouble(prop.getProperty("pageRankDamping", "0.85").trim());
+		options.pageRankTolerance = Double.parseDouble(prop.getProperty("pageRankTolerance", "1e-6").trim());
+		options.pageRankIterations = Integer.parseInt(prop.getProperty("pageRankIterations", "100").trim());
+		options.pageRankPush = Boolean.parseBoolean(prop.getProperty("pageRankPush", "false").trim());
+		return options;
+	}
+
+	/**
+	 * @return whether the native measures are compared with their dk.aaue.sna counterparts
+	 */
+	public boolean isCrossCheck() {
+		return crossCheck;
+	}
+
+	/**
+	 * @return the number of threads of the parallel measures
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the number of sources of ApproxBetweennessCentrality (0 to use epsilon and delta)
+	 */
+	public int getApproxSamples() {
+		return approxSamples;
+	}
+
+	/**
+	 * @return the wanted error of ApproxBetweennessCentrality, as a fraction of n(n-2)
+	 */
+	public double getApproxEpsilon() {
+		return approxEpsilon;
+	}
+
+	/**
+	 * @return the probability that the error of ApproxBetweennessCentrality is exceeded
+	 */
+	public double getApproxDelta() {
+		return approxDelta;
+	}
+
+	/**
+	 * @return the seed of the sample of ApproxBetweennessCentrality
+	 */
+	public long getApproxSeed() {
+		return approxSeed;
+	}
+
+	/**
+	 * @return the probability of following an edge in PersonalizedPageRank
+	 */
+	public double getPageRankDamping() {
+		return pageRankDamping;
+	}
+
+	/**
+	 * @return the convergence tolerance of PersonalizedPageRank
+	 */
+	public double getPageRankTolerance() {
+		return pageRankTolerance;
+	}
+
+	/**
+	 * @return the largest number of iterations of PersonalizedPageRank
+	 */
+	public int getPageRankIterations() {
+		return pageRankIterations;
+	}
+
+	/**
+	 * @return whether PersonalizedPageRank uses the local push approximation
+	 */
+	public boolean isPageRankPush() {
+		return pageRankPush;
+	}
+
+	/**
+	 * The pool of the parallel measures, created the first time (daemon threads).
+	 * @return the pool
+	 */
+	public synchronized ForkJoinPool pool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads);
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,208 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+import dk.aaue.sna.alg.centrality.BrandesBetweennessCentrality;
+import dk.aaue.sna.alg.centrality.CentralityMeasure;
+import dk.aaue.sna.alg.centrality.CentralityResult;
+import dk.aaue.sna.alg.centrality.DegreeCentrality;
+import dk.aaue.sna.alg.centrality.EigenvectorCentrality;
+import dk.aaue.sna.alg.centrality.FreemanClosenessCentrality;
+
+/**
+ * Centrality scores of the vertices of a paragraph graph. Every measure is computed
+ * at most once per graph, the first time one of its scores is asked for, and all the
+ * candidate scores are then read from the result. The graph must not change once
+ * scores have been computed.
+ * The Native* measures, ParallelBetweennessCentrality (native betweenness over the
+ * centralityThreads threads) and ApproxBetweennessCentrality (betweenness estimated
+ * from a sample of sources) and PersonalizedPageRank (random walk restarting on the
+ * candidates) are computed on a CSR snapshot of the graph (see NativeCentrality), the
+ * other ones with dk.aaue.sna. With centralityCrossCheck=true,
+ * the native scores are compared with the dk.aaue.sna ones.
+ *
+ * @author Brando & Frontini
+ */
+public class CentralityScores {
+
+	private static Logger logger = Logger.getLogger(CentralityScores.class);
+
+	/** the measures which can be given in the centrality parameter */
+	public static final List<String> MEASURES = Arrays.asList("DegreeCentrality",
+			"BrandesBetweennessCentrality", "FreemanClosenessCentrality", "EigenvectorCentrality",
+			"NativeDegreeCentrality", "NativeBetweennessCentrality", "NativeClosenessCentrality",
+			"NativeEigenvectorCentrality", "ParallelBetweennessCentrality", "ApproxBetweennessCentrality",
+			"PersonalizedPageRank");
+
+	/** dk.aaue.sna counterparts of the native measures */
+	private static final Map<String, String> SNA_MEASURES = new HashMap<String, String>();
+	static {
+		SNA_MEASURES.put("NativeDegreeCentrality", "DegreeCentrality");
+		SNA_MEASURES.put("NativeBetweennessCentrality", "BrandesBetweennessCentrality");
+		SNA_MEASURES.put("NativeClosenessCentrality", "FreemanClosenessCentrality");
+		SNA_MEASURES.put("NativeEigenvectorCentrality", "EigenvectorCentrality");
+		SNA_MEASURES.put("ParallelBetweennessCentrality", "BrandesBetweennessCentrality");
+		SNA_MEASURES.put("ApproxBetweennessCentrality", "BrandesBetweennessCentrality");
+	}
+
+	@SuppressWarnings("rawtypes")
+	private final SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph;
+
+	private final CentralityOptions options;
+
+	/** IDs of the candidates, on which PersonalizedPageRank restarts */
+	private final BitSet candidates;
+
+	private CsrGraph csr = null;
+
+	/** scores of every measure, by position of the vertices in the snapshot */
+	private final Map<String, double[]> results = new HashMap<String, double[]>();
+
+	/**
+	 * @param graph, the (simplified) graph of the paragraph
+	 * @param options, the centrality settings
+	 */
+	@SuppressWarnings("rawtypes")
+	public CentralityScores(SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph, CentralityOptions options) {
+		this(graph, options, null);
+	}
+
+	/**
+	 * @param graph, the (simplified) graph of the paragraph
+	 * @param options, the centrality settings
+	 * @param candidates, IDs of the candidates (null for none)
+	 */
+	@SuppressWarnings("rawtypes")
+	public CentralityScores(SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph, CentralityOptions options,
+			BitSet candidates) {
+		this.graph = graph;
+		this.options = options;
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Whether a measure is known.
+	 * @param measure, the name of the measure
+	 * @return true if known
+	 */
+	public static boolean isMeasure(String measure) {
+		return MEASURES.contains(measure);
+	}
+
+	/**
+	 * Score of a vertex.
+	 * @param measure, the name of the measure
+	 * @param vertex, the vertex
+	 * @return the score (0 if the vertex has none)
+	 */
+	public double get(String measure, int vertex) {
+		double[] scores = scores(measure);
+		int pos = csr().position(vertex);
+		return pos >= 0 ? scores[pos] : 0.0;
+	}
+
+	/**
+	 * The CSR snapshot of the graph, built the first time.
+	 * @return the snapshot
+	 */
+	public synchronized CsrGraph csr() {
+		if (csr == null) {
+			csr = CsrGraph.of(graph);
+		}
+		return csr;
+	}
+
+	/**
+	 * Scores of a measure, computed the first time.
+	 * @param measure, the name of the measure
+	 * @return the scores, by position of the vertices in the snapshot
+	 */
+	public synchronized double[] scores(String measure) {
+		double[] scores = results.get(measure);
+		if (scores == null) {
+			long start = System.currentTimeMillis();
+			scores = compute(measure);
+			logger.info(measure + " computed on " + graph.vertexSet().size() + " vertices and "
+					+ graph.edgeSet().size() + " edges in " + (System.currentTimeMillis() - start)
+					+ " total milliseconds");
+			results.put(measure, scores);
+			if (options.isCrossCheck() && SNA_MEASURES.containsKey(measure)) {
+				crossCheck(measure, scores, scores(SNA_MEASURES.get(measure)));
+			}
+		}
+		return scores;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private double[] compute(String measure) {
+		CentralityMeasure<Integer> cm;
+		if (measure.equals("NativeDegreeCentrality")) {
+			return NativeCentrality.degree(csr());
+		} else if (measure.equals("NativeBetweennessCentrality")) {
+			return NativeCentrality.betweenness(csr());
+		} else if (measure.equals("NativeClosenessCentrality")) {
+			return NativeCentrality.closeness(csr());
+		} else if (measure.equals("NativeEigenvectorCentrality")) {
+			return NativeCentrality.eigenvector(csr());
+		} else if (measure.equals("ParallelBetweennessCentrality")) {
+			return ParallelBetweennessCentrality.betweenness(csr(), options.pool());
+		} else if (measure.equals("ApproxBetweennessCentrality")) {
+			return ApproxBetweennessCentrality.betweenness(csr(), options.getApproxSamples(),
+					options.getApproxEpsilon(), options.getApproxDelta(), options.getApproxSeed(), options.pool());
+		} else if (measure.equals("PersonalizedPageRank")) {
+			return PersonalizedPageRank.pageRank(csr(), candidates, options);
+		} else if (measure.equals("DegreeCentrality")) {
+			cm = new DegreeCentrality<Integer, LabeledEdge>(graph);
+		} else if (measure.equals("BrandesBetweennessCentrality")) {
+			cm = new BrandesBetweennessCentrality<Integer, LabeledEdge>(graph);
+		} else if (measure.equals("FreemanClosenessCentrality")) {
+			cm = new FreemanClosenessCentrality<Integer, LabeledEdge>(graph);
+		} else if (measure.equals("EigenvectorCentrality")) {
+			cm = new EigenvectorCentrality<Integer, LabeledEdge>(graph);
+		} else {
+			throw new IllegalArgumentException("unknown centrality measure: " + measure);
+		}
+		CentralityResult<Integer> cr = cm.calculate();
+		CsrGraph csr = csr();
+		double[] scores = new double[csr.size()];
+		for (int pos = 0; pos < scores.length; pos++) {
+			Double val = cr.get(csr.vertex(pos));
+			scores[pos] = val != null ? val : 0.0;
+		}
+		return scores;
+	}
+
+	/**
+	 * Logs the largest difference between the native scores and the dk.aaue.sna ones.
+	 */
+	private void crossCheck(String measure, double[] scores, double[] snaScores) {
+		double maxDiff = 0;
+		int worst = -1;
+		for (int pos = 0; pos < scores.length; pos++) {
+			if (Double.compare(scores[pos], snaScores[pos]) == 0) { //also equal infinities and NaN
+				continue;
+			}
+			double diff = Math.abs(scores[pos] - snaScores[pos]);
+			if (Double.isNaN(diff)) {
+				diff = Double.POSITIVE_INFINITY;
+			}
+			if (worst < 0 || diff > maxDiff) {
+				maxDiff = diff;
+				worst = pos;
+			}
+		}
+		if (worst < 0) {
+			logger.info("cross-check of " + measure + " with " + SNA_MEASURES.get(measure) + ": same scores");
+		} else {
+			logger.info("cross-check of " + measure + " with " + SNA_MEASURES.get(measure) + ": largest difference "
+					+ maxDiff + " (vertex " + csr().vertex(worst) + ": " + scores[worst] + " vs " + snaScores[worst] + ")");
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+/**
+ * Immutable compressed sparse row snapshot of a (pruned) paragraph graph, used by the
+ * native centrality measures (see NativeCentrality). Vertices are numbered by their
+ * position (0..size-1) in the vertex set of the graph. Edges are seen in both
+ * directions, as the dk.aaue.sna measures do: every edge gives an arc from each of its
+ * ends, so that two opposite edges give two arcs between the same vertices. The weight
+ * of an arc is the weight of its edge, or, between vertices linked in both directions,
+ * the weight of the last of the two edges (as in the shortest paths of dk.aaue.sna).
+ *
+ * @author Brando & Frontini
+ */
+public class CsrGraph {
+
+	/** registry IDs of the vertices, by position */
+	private final int[] vertices;
+
+	/** sorted registry IDs of the vertices and their positions */
+	private final int[] sortedVertices;
+
+	private final int[] sortedPositions;
+
+	/** first arc of every vertex (and end of the last one) */
+	private final int[] offsets;
+
+	private final int[] targets;
+
+	private final double[] weights;
+
+	/** sum of the weights of the edges of every vertex */
+	private final double[] weightedDegrees;
+
+	private final boolean unitWeights;
+
+	private CsrGraph(int[] vertices, int[] offsets, int[] targets, double[] weights, double[] weightedDegrees,
+			boolean unitWeights) {
+		this.vertices = vertices;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.weightedDegrees = weightedDegrees;
+		this.unitWeights = unitWeights;
+		long[] keys = new long[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			keys[i] = ((long) vertices[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		sortedVertices = new int[vertices.length];
+		sortedPositions = new int[vertices.length];
+		for (int i = 0; i < keys.length; i++) {
+			sortedVertices[i] = (int) (keys[i] >>> 32);
+			sortedPositions[i] = (int) keys[i];
+		}
+	}
+
+	/**
+	 * Snapshot of a graph, which must not change while the snapshot is built.
+	 * @param graph, the graph
+	 * @return the snapshot
+	 */
+	@SuppressWarnings("rawtypes")
+	public static CsrGraph of(SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph) {
+		int n = graph.vertexSet().size();
+		int[] vertices = new int[n];
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>(n * 2);
+		int p = 0;
+		for (Integer vertex : graph.vertexSet()) {
+			vertices[p] = vertex;
+			positions.put(vertex, p++);
+		}
+		int m = graph.edgeSet().size();
+		int[] sources = new int[m];
+		int[] ends = new int[m];
+		double[] edgeWeights = new double[m];
+		int[] offsets = new int[n + 1];
+		double[] weightedDegrees = new double[n];
+		Map<Long, Double> pairWeights = null; //vertices linked in both directions
+		boolean unitWeights = true;
+		int e = 0;
+		for (LabeledEdge edge : graph.edgeSet()) {
+			Integer source = graph.getEdgeSource(edge);
+			Integer target = graph.getEdgeTarget(edge);
+			int s = positions.get(source);
+			int t = positions.get(target);
+			double weight = graph.getEdgeWeight(edge);
+			sources[e] = s;
+			ends[e] = t;
+			edgeWeights[e] = weight;
+			offsets[s + 1]++;
+			offsets[t + 1]++;
+			weightedDegrees[s] += weight;
+			weightedDegrees[t] += weight;
+			if (weight != 1.0) {
+				unitWeights = false;
+			}
+			if (graph.containsEdge(target, source)) {
+				if (pairWeights == null) {
+					pairWeights = new HashMap<Long, Double>();
+				}
+				pairWeights.put(pair(s, t), weight);
+			}
+			e++;
+		}
+		for (int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] targets = new int[2 * m];
+		double[] weights = new double[2 * m];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int i = 0; i < m; i++) {
+			double weight = edgeWeights[i];
+			if (pairWeights != null) {
+				Double pairWeight = pairWeights.get(pair(sources[i], ends[i]));
+				if (pairWeight != null) {
+					weight = pairWeight;
+				}
+			}
+			targets[next[sources[i]]] = ends[i];
+			weights[next[sources[i]]++] = weight;
+			targets[next[ends[i]]] = sources[i];
+			weights[next[ends[i]]++] = weight;
+		}
+		return new CsrGraph(vertices, offsets, targets, weights, weightedDegrees, unitWeights);
+	}
+
+	private static long pair(int s, int t) {
+		return ((long) Math.min(s, t) << 32) | Math.max(s, t);
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int size() {
+		return vertices.length;
+	}
+
+	/**
+	 * @return the number of arcs (twice the number of edges)
+	 */
+	public int arcCount() {
+		return targets.length;
+	}
+
+	/**
+	 * @param pos, position of a vertex
+	 * @return the registry ID of the vertex
+	 */
+	public int vertex(int pos) {
+		return vertices[pos];
+	}
+
+	/**
+	 * @param vertex, registry ID of a vertex
+	 * @return the position of the vertex or -1 if it is not in the graph
+	 */
+	public int position(int vertex) {
+		int i = Arrays.binarySearch(sortedVertices, vertex);
+		return i >= 0 ? sortedPositions[i] : -1;
+	}
+
+	/**
+	 * @param pos, position of a vertex
+	 * @return the first arc of the vertex
+	 */
+	public int start(int pos) {
+		return offsets[pos];
+	}
+
+	/**
+	 * @param pos, position of a vertex
+	 * @return the end (exclusive) of the arcs of the vertex
+	 */
+	public int end(int pos) {
+		return offsets[pos + 1];
+	}
+
+	/**
+	 * @param arc, number of an arc
+	 * @return the position of the vertex the arc leads to
+	 */
+	public int target(int arc) {
+		return targets[arc];
+	}
+
+	/**
+	 * @param arc, number of an arc
+	 * @return the weight of the arc
+	 */
+	public double weight(int arc) {
+		return weights[arc];
+	}
+
+	/**
+	 * @param pos, position of a vertex
+	 * @return the sum of the weights of the edges of the vertex
+	 */
+	public double weightedDegree(int pos) {
+		return weightedDegrees[pos];
+	}
+
+	/**
+	 * @return true if all the edges have the weight 1
+	 */
+	public boolean hasUnitWeights() {
+		return unitWeights;
+	}
+}
@@ -0,0 +1,302 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.OfflineSorter;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * In-memory name dictionary backed by a finite-state transducer (useDicoIndex=fst).
+ * The FST maps every normalized name form to the position of its list of entries in a
+ * packed table of tab-joined URI lists. FST and table are stored in a single file
+ * (dico.fst in indexDir), the table is memory-mapped when the dictionary is opened.
+ * The FST itself is loaded on the heap (Lucene 5 cannot read it off-heap), its size is
+ * logged when the dictionary is opened. The names are sorted on disk when the file
+ * is built, so building does not keep the dictionary in memory either.
+ *
+ * @author Brando & Frontini
+ */
+public class DicoFST {
+
+	private static Logger logger = Logger.getLogger(DicoFST.class);
+
+	public static final String FST_FILE = "dico.fst";
+
+	private static final String CODEC = "REDENDicoFST";
+
+	private static final int VERSION = 0;
+
+	private Directory dir;
+
+	private IndexInput in;
+
+	private FST<Long> fst;
+
+	private IndexInput lists;
+
+	private IndexInput rows;
+
+	/**
+	 * Order of the (name, row offset) records sorted before building the FST: by name
+	 * (unsigned bytes, as required by the FST builder), then by offset. The offset is
+	 * the last 8 bytes of a record.
+	 */
+	private static final Comparator<BytesRef> NAME_ORDER = new Comparator<BytesRef>() {
+		@Override
+		public int compare(BytesRef a, BytesRef b) {
+			int aLength = a.length - 8;
+			int bLength = b.length - 8;
+			for (int i = 0; i < Math.min(aLength, bLength); i++) {
+				int cmp = (a.bytes[a.offset + i] & 0xFF) - (b.bytes[b.offset + i] & 0xFF);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			if (aLength != bLength) {
+				return aLength - bLength;
+			}
+			return Long.compare(offset(a), offset(b));
+		}
+	};
+
+	private static long offset(BytesRef record) {
+		long offset = 0;
+		for (int i = record.length - 8; i < record.length; i++) {
+			offset = (offset << 8) | (record.bytes[record.offset + i] & 0xFF);
+		}
+		return offset;
+	}
+
+	private static boolean sameName(BytesRef a, BytesRef b) {
+		if (a.length != b.length) {
+			return false;
+		}
+		for (int i = 0; i < a.length - 8; i++) {
+			if (a.bytes[a.offset + i] != b.bytes[b.offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the FST dictionary file exists in the given folder.
+	 * @param indexDirStr, folder of the dictionary index
+	 * @return true if the file exists
+	 */
+	public static boolean exists(String indexDirStr) {
+		return new File(indexDirStr.trim(), FST_FILE).exists();
+	}
+
+	/**
+	 * Compiles the dictionary files (*.tsv) into the FST dictionary file.
+	 * @param indexDirStr, folder where the FST file is written
+	 * @param dataDirStr, dictionary data
+	 */
+	public static void build(String indexDirStr, String dataDirStr) {
+		Date start = new Date();
+		Path docDir = Paths.get(dataDirStr.trim());
+		if (!Files.isReadable(docDir)) {
+			System.out.println("Document directory '" + docDir.toAbsolutePath()
+					+ "' does not exist or is not readable, please check the path");
+			return;
+		}
+		Path indexPath = Paths.get(indexDirStr.trim());
+		try {
+			indexPath.toFile().mkdirs();
+			Directory dir = new MMapDirectory(indexPath);
+			// 1) rows: the URI list of every dictionary line, and a (name, row) record per line
+			Path unsorted = indexPath.resolve(FST_FILE + ".names");
+			Path sorted = indexPath.resolve(FST_FILE + ".names.sorted");
+			OfflineSorter.ByteSequencesWriter namesOut = new OfflineSorter.ByteSequencesWriter(unsorted);
+			IndexOutput rowsOut = dir.createOutput(FST_FILE + ".rows", IOContext.DEFAULT);
+			int lines = 0;
+			List<Path> files = DicoProcessingNEL.listDicoFiles(docDir); // same files as createIndex
+			Collections.sort(files);
+			for (Path file : files) {
+				CSVReader reader = new CSVReader(new InputStreamReader(
+						Files.newInputStream(file), "UTF-8"), '\t',
+						CSVWriter.NO_QUOTE_CHARACTER);
+				String[] line;
+				while ((line = reader.readNext()) != null) {
+					String name = DicoProcessingNEL.replaceNonAlphabeticCharacters(line[0]);
+					if (name.isEmpty()) {
+						continue;
+					}
+					StringBuilder uris = new StringBuilder();
+					for (int k = 2; k < line.length; k++) {
+						uris.append('\t').append(line[k]);
+					}
+					BytesRef key = new BytesRef(name);
+					byte[] record = Arrays.copyOf(key.bytes, key.length + 8);
+					long offset = rowsOut.getFilePointer();
+					for (int i = 0; i < 8; i++) {
+						record[key.length + i] = (byte) (offset >>> (56 - 8 * i));
+					}
+					namesOut.write(record);
+					rowsOut.writeString(uris.toString().trim());
+					lines++;
+				}
+				reader.close();
+				logger.info("file processed " + file);
+			}
+			rowsOut.close();
+			namesOut.close();
+
+			// 2) records sorted on disk by name, lists of rows per name added in this order
+			new OfflineSorter(NAME_ORDER, OfflineSorter.BufferSize.automatic(), indexPath,
+					OfflineSorter.MAX_TEMPFILES).sort(unsorted, sorted);
+			Files.delete(unsorted);
+			PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+			Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE1, outputs);
+			IntsRefBuilder scratch = new IntsRefBuilder();
+			IndexOutput listsOut = dir.createOutput(FST_FILE + ".lists", IOContext.DEFAULT);
+			listsOut.writeByte((byte) 0); //offsets start at 1, 0 is the FST "no output"
+			OfflineSorter.ByteSequencesReader namesIn = new OfflineSorter.ByteSequencesReader(sorted);
+			BytesRefBuilder record = new BytesRefBuilder();
+			BytesRefBuilder previous = new BytesRefBuilder();
+			List<Long> offsets = new ArrayList<Long>();
+			int names = 0;
+			boolean more = namesIn.read(record);
+			while (more) {
+				previous.copyBytes(record.get());
+				offsets.clear();
+				do {
+					offsets.add(offset(record.get()));
+					more = namesIn.read(record);
+				} while (more && sameName(previous.get(), record.get()));
+				BytesRef name = new BytesRef(previous.bytes(), 0, previous.length() - 8);
+				builder.add(Util.toIntsRef(name, scratch), listsOut.getFilePointer());
+				listsOut.writeVInt(offsets.size());
+				for (Long offset : offsets) {
+					listsOut.writeVLong(offset);
+				}
+				names++;
+			}
+			namesIn.close();
+			Files.delete(sorted);
+			listsOut.close();
+			FST<Long> fst = builder.finish();
+
+			// 3) single file: header, FST, lists, rows
+			IndexOutput out = dir.createOutput(FST_FILE + ".tmp", IOContext.DEFAULT);
+			CodecUtil.writeHeader(out, CODEC, VERSION);
+			out.writeByte((byte) (fst != null ? 1 : 0));
+			if (fst != null) {
+				fst.save(out);
+			}
+			for (String part : new String[] { FST_FILE + ".lists", FST_FILE + ".rows" }) {
+				IndexInput partIn = dir.openInput(part, IOContext.READONCE);
+				out.writeVLong(partIn.length());
+				out.copyBytes(partIn, partIn.length());
+				partIn.close();
+				dir.deleteFile(part);
+			}
+			CodecUtil.writeFooter(out);
+			out.close();
+			if (new File(indexPath.toFile(), FST_FILE).exists()) {
+				dir.deleteFile(FST_FILE);
+			}
+			dir.renameFile(FST_FILE + ".tmp", FST_FILE);
+			dir.close();
+			Date end = new Date();
+			logger.info("FST dictionary built with " + names + " names and " + lines
+					+ " entries in " + (end.getTime() - start.getTime()) + " total milliseconds");
+		} catch (IOException e) {
+			System.out.println(" caught a " + e.getClass()
+					+ "\n with message: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Opens the FST dictionary file of the given folder.
+	 * @param indexDirStr, folder of the dictionary index
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public static DicoFST open(String indexDirStr) throws IOException {
+		DicoFST dico = new DicoFST();
+		dico.dir = new MMapDirectory(Paths.get(indexDirStr.trim()));
+		dico.in = dico.dir.openInput(FST_FILE, IOContext.READ);
+		CodecUtil.checkHeader(dico.in, CODEC, VERSION, VERSION);
+		if (dico.in.readByte() == 1) { //copied on the heap
+			dico.fst = new FST<Long>(dico.in, PositiveIntOutputs.getSingleton());
+			logger.info("FST dictionary: " + dico.fst.ramBytesUsed() + " bytes of FST on the heap");
+		}
+		long listsLength = dico.in.readVLong();
+		dico.lists = dico.in.slice("lists", dico.in.getFilePointer(), listsLength);
+		dico.in.seek(dico.in.getFilePointer() + listsLength);
+		long rowsLength = dico.in.readVLong();
+		dico.rows = dico.in.slice("rows", dico.in.getFilePointer(), rowsLength);
+		return dico;
+	}
+
+	/**
+	 * Exact-match lookup of a normalized name.
+	 * @param name, the normalized name form
+	 * @param maxResults, maximum number of entries to return
+	 * @return the tab-joined URI lists of the entries of this name
+	 * @throws IOException
+	 */
+	public Set<String> lookup(String name, int maxResults) throws IOException {
+		Set<String> results = new LinkedHashSet<String>();
+		if (fst == null) {
+			return results;
+		}
+		Long offset = Util.get(fst, new BytesRef(name));
+		if (offset == null) {
+			return results;
+		}
+		// clones are cheap and make concurrent lookups safe
+		IndexInput listsIn = lists.clone();
+		IndexInput rowsIn = rows.clone();
+		listsIn.seek(offset);
+		int size = listsIn.readVInt();
+		for (int i = 0; i < size && results.size() < maxResults; i++) {
+			rowsIn.seek(listsIn.readVLong());
+			results.add(rowsIn.readString());
+		}
+		return results;
+	}
+
+	/**
+	 * Releases the memory-mapped file.
+	 */
+	public void close() {
+		try {
+			in.close();
+			dir.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Manifest of the dictionary files (*.tsv) indexed in a Lucene index: size,
+ * last modification time and content hash of every source file. It is stored
+ * in the index folder and used to re-index only the files that have changed.
+ *
+ * @author Brando & Frontini
+ */
+public class DicoIndexManifest {
+
+	public static final String MANIFEST_FILE = "dico-manifest.tsv";
+
+	private Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	/**
+	 * Information about one source file.
+	 */
+	public static class Entry {
+		public long size;
+		public long lastModified;
+		public String hash;
+
+		public Entry(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Reads the manifest of an index folder.
+	 * @param indexDirStr, the index folder
+	 * @return the manifest or null if the index has no manifest
+	 */
+	public static DicoIndexManifest load(String indexDirStr) {
+		File file = new File(indexDirStr.trim(), MANIFEST_FILE);
+		if (!file.exists()) {
+			return null;
+		}
+		DicoIndexManifest manifest = new DicoIndexManifest();
+		try {
+			BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String s;
+			while ((s = br.readLine()) != null) {
+				String[] li = s.split("\t");
+				if (li.length == 4) {
+					manifest.entries.put(li[0], new Entry(Long.parseLong(li[1]), Long.parseLong(li[2]), li[3]));
+				}
+			}
+			br.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest in the index folder (the previous one is replaced atomically).
+	 * @param indexDirStr, the index folder
+	 * @throws IOException
+	 */
+	public void save(String indexDirStr) throws IOException {
+		File file = new File(indexDirStr.trim(), MANIFEST_FILE);
+		File tmp = new File(indexDirStr.trim(), MANIFEST_FILE + ".tmp");
+		Writer out = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), "UTF-8");
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			out.write(e.getKey() + "\t" + e.getValue().size + "\t" + e.getValue().lastModified
+					+ "\t" + e.getValue().hash + "\n");
+		}
+		out.close();
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public Map<String, Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Computes the content hash (SHA-1) of a file.
+	 * @param file, the file
+	 * @return the hexadecimal hash
+	 * @throws IOException
+	 */
+	public static String hash(Path file) throws IOException {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			InputStream in = Files.newInputStream(file);
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				md.update(buffer, 0, read);
+			}
+			in.close();
+			StringBuilder hex = new StringBuilder();
+			for (byte b : md.digest()) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+/**
+ * Dictionary lookup service: every index of the dictionary is opened once per run
+ * and its searcher is shared by all the lookups (IndexSearcher is thread-safe).
+ * With useDicoIndex=fst, the FST dictionaries (see DicoFST) are used instead.
+ *
+ * @author Brando & Frontini
+ */
+public class DicoLookupService {
+
+	private static Logger logger = Logger.getLogger(DicoLookupService.class);
+
+	private Map<String, Directory> directories = new HashMap<String, Directory>();
+
+	private Map<String, DirectoryReader> readers = new HashMap<String, DirectoryReader>();
+
+	private Map<String, IndexSearcher> searchers = new HashMap<String, IndexSearcher>();
+
+	private Map<String, DicoFST> fsts = new HashMap<String, DicoFST>();
+
+	private boolean useFst = false;
+
+	private AtomicLong lookups = new AtomicLong();
+
+	/**
+	 * Maximum number of dictionary entries returned for a single name.
+	 */
+	private static final int MAX_HITS_PER_TERM = 100;
+
+	/**
+	 * Lookup service on the Lucene indexes.
+	 */
+	public DicoLookupService() {
+	}
+
+	/**
+	 * Lookup service on the Lucene indexes or on the FST dictionaries.
+	 * @param useFst, true to use the FST dictionaries (useDicoIndex=fst)
+	 */
+	public DicoLookupService(boolean useFst) {
+		this.useFst = useFst;
+	}
+
+	/**
+	 * Get the FST dictionary of a given index folder, it is opened the first time only.
+	 * @param index, name of the index folder
+	 * @return the shared FST dictionary
+	 * @throws IOException
+	 */
+	public synchronized DicoFST getFst(String index) throws IOException {
+		String key = index.trim();
+		DicoFST fst = fsts.get(key);
+		if (fst == null) {
+			fst = DicoFST.open(key);
+			fsts.put(key, fst);
+			logger.info("Opened FST dictionary " + key);
+		}
+		return fst;
+	}
+
+	/**
+	 * Get the searcher of a given index, the index is opened the first time only.
+	 * @param index, name of the index
+	 * @return the shared searcher
+	 * @throws IOException
+	 */
+	public synchronized IndexSearcher getSearcher(String index) throws IOException {
+		String key = index.trim();
+		IndexSearcher searcher = searchers.get(key);
+		if (searcher == null) {
+			Directory dir = FSDirectory.open(Paths.get(key));
+			DirectoryReader reader = DirectoryReader.open(dir);
+			searcher = new IndexSearcher(reader);
+			directories.put(key, dir);
+			readers.put(key, reader);
+			searchers.put(key, searcher);
+			logger.info("Opened dictionary index " + key + " (" + reader.numDocs() + " entries)");
+		}
+		return searcher;
+	}
+
+	/**
+	 * Method to search for a phrase in the index built from the dictionary.
+	 * @param index, name of the index
+	 * @param field, name of the field to search within the index
+	 * @param queryString, the phrase to search for
+	 * @return the results
+	 */
+	public Set<String> search(String index, String field, String queryString) {
+		Set<String> results = searchBatch(index, field, Collections.singleton(queryString)).get(queryString);
+		if (results == null) {
+			results = new HashSet<String>();
+		}
+		return results;
+	}
+
+	/**
+	 * Method to search for several phrases at once in the index built from the dictionary,
+	 * every phrase is resolved with its own exact term query on the shared searcher, so that
+	 * each one gets up to MAX_HITS_PER_TERM entries whatever the other phrases match.
+	 * @param index, name of the index
+	 * @param field, name of the field to search within the index
+	 * @param queryStrings, the (normalized) phrases to search for
+	 * @return the results for each phrase found in the index
+	 */
+	public Map<String, Set<String>> searchBatch(String index, String field,
+			Collection<String> queryStrings) {
+		Map<String, Set<String>> results = new HashMap<String, Set<String>>();
+		Set<String> distinct = new LinkedHashSet<String>(queryStrings);
+		if (distinct.isEmpty()) {
+			return results;
+		}
+		lookups.addAndGet(distinct.size());
+		if (useFst) {
+			try {
+				DicoFST fst = getFst(index);
+				for (String term : distinct) {
+					Set<String> uris = fst.lookup(term, MAX_HITS_PER_TERM);
+					if (!uris.isEmpty()) {
+						results.put(term, uris);
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return results;
+		}
+		try {
+			IndexSearcher searcher = getSearcher(index);
+			Set<String> fieldsToLoad = new HashSet<String>();
+			fieldsToLoad.add("uris");
+			for (String term : distinct) {
+				TopDocs hits = searcher.search(new TermQuery(new Term(field, term)), MAX_HITS_PER_TERM);
+				ScoreDoc[] scoreDocs = hits.scoreDocs;
+				if (scoreDocs.length == 0) {
+					continue;
+				}
+				Set<String> uris = new HashSet<String>();
+				for (int n = 0; n < scoreDocs.length; ++n) {
+					Document d = searcher.doc(scoreDocs[n].doc, fieldsToLoad);
+					uris.add(d.get("uris"));
+				}
+				results.put(term, uris);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return results;
+	}
+
+	/**
+	 * Number of lookups served so far.
+	 * @return the number of lookups
+	 */
+	public long getLookups() {
+		return lookups.get();
+	}
+
+	/**
+	 * Closes every opened index and reports how many index opens were saved.
+	 */
+	public synchronized void close() {
+		for (String key : readers.keySet()) {
+			try {
+				readers.get(key).close();
+				directories.get(key).close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		for (DicoFST fst : fsts.values()) {
+			fst.close();
+		}
+		int opened = readers.size() + fsts.size();
+		long saved = lookups.get() - opened;
+		logger.info("Dictionary lookup service closed: " + opened + " index(es) opened for "
+				+ lookups.get() + " lookups, " + (saved > 0 ? saved : 0) + " index opens saved");
+		readers.clear();
+		fsts.clear();
+		directories.clear();
+		searchers.clear();
+	}
+}
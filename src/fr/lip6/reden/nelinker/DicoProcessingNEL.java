@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.FileVisitResult;
@@ -14,19 +13,24 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -37,10 +41,7 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
 import org.apache.lucene.search.RegexpQuery;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -59,6 +60,11 @@ public class DicoProcessingNEL {
 
 	private static Logger logger = Logger.getLogger(DicoProcessingNEL.class);
 	
+	/**
+	 * Field of the index storing the dictionary file of every entry.
+	 */
+	public static final String SOURCE_FILE_FIELD = "sourceFile";
+	
 	/**
 	 * It retrieves URIs from the dictionary for each mention.
 	 * @param dirDico, folder of the dictionary
@@ -66,12 +72,11 @@ public class DicoProcessingNEL {
 	 * @param mentions, the mentions of the current paragraph
 	 * @return the list of possible sets of URIs for each mention
 	 */
-	@SuppressWarnings({ "rawtypes" })
-	public static Map<String, List<List<String>>> retrieveMentionsURIsFromDico(
+	public static Map<String, CandidateSet> retrieveMentionsURIsFromDico(
 			String dirDico, String nameDictionary, List<String> mentions) {
 
 		Date start = new Date();
-		Map<String, List<List<String>>> out = new HashMap<String, List<List<String>>>();
+		Map<String, CandidateSet> out = new HashMap<String, CandidateSet>();
 		try {
 
 			File folder = new File(dirDico + "/" + nameDictionary);
@@ -95,24 +100,13 @@ public class DicoProcessingNEL {
 								for (int k = 2; k < line.length; k++) {
 									l.add(line[k]);
 								}
-								if (out.get(line[0]) == null) {
-									List<List<String>> lc = new ArrayList<List<String>>();
-									lc.add(l);
+								CandidateSet lc = out.get(line[0]);
+								if (lc == null) {
+									lc = new CandidateSet();
 									out.put(line[0], lc);
-								} else {
-									List<List<String>> lc = out.get(line[0]);
-									// avoiding to add an identical list
-									boolean in = false;
-									for (List<String> list : lc) {
-										List listOne = Arrays.asList(list);
-										List listTwo = Arrays.asList(l);
-										if (listOne.equals(listTwo))
-											in = true;
-									}
-									if (!in) {
-										lc.add(l);
-									}
 								}
+								// an identical list is not added twice
+								lc.add(l);
 							}
 						}
 					}
@@ -140,41 +134,96 @@ public class DicoProcessingNEL {
 	 * @param indexDirStr, folder of the dictionary index
 	 * @return the list of possible sets of URIs for each mention
 	 */
-	@SuppressWarnings({ "rawtypes" })
-	public static Map<String, List<List<String>>> retrieveMentionsURIsFromDicoWithIndex(
+	public static Map<String, CandidateSet> retrieveMentionsURIsFromDicoWithIndex(
 			String nameDictionary, List<String> mentions, String indexDirStr) {
 
+		DicoLookupService service = new DicoLookupService();
+		Map<String, CandidateSet> out = retrieveMentionsURIsFromDicoWithIndex(
+				nameDictionary, mentions, indexDirStr, service);
+		service.close();
+		return out;
+	}
+
+	/**
+	 * It retrieves URIs from the dictionary for each mention using the Lucene index
+	 * through a lookup service shared by the whole run. All the distinct normalized 
+	 * mentions are resolved at once on the shared searcher (see DicoLookupService.searchBatch).
+	 * @param nameDictionary, the name of the dictionary
+	 * @param mentions, the mentions of the current paragraph (or of a whole document)
+	 * @param indexDirStr, folder of the dictionary index
+	 * @param service, the dictionary lookup service keeping the index open
+	 * @return the list of possible sets of URIs for each mention
+	 */
+	public static Map<String, CandidateSet> retrieveMentionsURIsFromDicoWithIndex(
+			String nameDictionary, List<String> mentions, String indexDirStr,
+			DicoLookupService service) {
+		return retrieveMentionsURIsFromDicoWithIndex(nameDictionary, mentions, indexDirStr, service, null);
+	}
+
+	/**
+	 * It retrieves URIs from the dictionary for each mention using the Lucene index
+	 * through a lookup service shared by the whole run. The names already resolved 
+	 * (in this paragraph or in a previous one) are taken from the candidate cache, 
+	 * the other distinct normalized mentions are resolved at once (see DicoLookupService.searchBatch).
+	 * @param nameDictionary, the name of the dictionary
+	 * @param mentions, the mentions of the current paragraph (or of a whole document)
+	 * @param indexDirStr, folder of the dictionary index
+	 * @param service, the dictionary lookup service keeping the index open
+	 * @param cache, the candidate cache of the run (or null)
+	 * @return the list of possible sets of URIs for each mention
+	 */
+	public static Map<String, CandidateSet> retrieveMentionsURIsFromDicoWithIndex(
+			String nameDictionary, List<String> mentions, String indexDirStr,
+			DicoLookupService service, CandidateCache cache) {
+
 		Date start = new Date();
-		Map<String, List<List<String>>> out = new HashMap<String, List<List<String>>>();
+		Map<String, CandidateSet> out = new HashMap<String, CandidateSet>();
+		Map<String, String> normalizedMentions = new LinkedHashMap<String, String>();
 		for (String mention : mentions) {
-			Set<String> results = DicoProcessingNEL.searchIndex(indexDirStr, "nameForm",
-					DicoProcessingNEL.replaceNonAlphabeticCharacters(mention));
-			for (String result : results) {
-				String[] uris = result.trim().split("\t");
-				List<String> l = new ArrayList<String>();
-				for (int k = 0; k < uris.length; k++) {
-					l.add(uris[k]);
-				}
-				if (out.get(mention) == null) {
-					List<List<String>> lc = new ArrayList<List<String>>();
-					lc.add(l);
-					out.put(mention, lc);
-				} else {
-					List<List<String>> lc = out.get(mention);
-					// avoiding to add an identical list
-					boolean in = false;
-					for (List<String> list : lc) {
-						List listOne = Arrays.asList(list);
-						List listTwo = Arrays.asList(l);
-						if (listOne.equals(listTwo))
-							in = true;
-					}
-					if (!in) {
-						lc.add(l);
+			if (!normalizedMentions.containsKey(mention)) {
+				normalizedMentions.put(mention, DicoProcessingNEL.replaceNonAlphabeticCharacters(mention));
+			}
+		}
+		// candidate sets per normalized name, from the cache first
+		Map<String, CandidateSet> candidatesPerName = new HashMap<String, CandidateSet>();
+		Set<String> toSearch = new LinkedHashSet<String>();
+		for (String name : normalizedMentions.values()) {
+			if (candidatesPerName.containsKey(name) || toSearch.contains(name)) {
+				continue;
+			}
+			CandidateSet cached = cache != null ? cache.get(indexDirStr, name) : null;
+			if (cached != null) {
+				candidatesPerName.put(name, cached);
+			} else {
+				toSearch.add(name);
+			}
+		}
+		Map<String, Set<String>> resultsPerName = service.searchBatch(indexDirStr, "nameForm", toSearch);
+		for (String name : toSearch) {
+			CandidateSet lc = new CandidateSet();
+			Set<String> results = resultsPerName.get(name);
+			if (results != null) {
+				for (String result : results) {
+					String[] uris = result.trim().split("\t");
+					List<String> l = new ArrayList<String>();
+					for (int k = 0; k < uris.length; k++) {
+						l.add(uris[k]);
 					}
+					// an identical list is not added twice
+					lc.add(l);
 				}
 			}
-
+			lc.readOnly();
+			candidatesPerName.put(name, lc);
+			if (cache != null) {
+				cache.put(indexDirStr, name, lc);
+			}
+		}
+		for (String mention : normalizedMentions.keySet()) {
+			CandidateSet lc = candidatesPerName.get(normalizedMentions.get(mention));
+			if (lc != null && !lc.isEmpty()) {
+				out.put(mention, lc);
+			}
 		}
 		Date end = new Date();
 		logger.info("Finished retrieveMentionsURIsFromDicoWithIndex in "
@@ -190,6 +239,29 @@ public class DicoProcessingNEL {
 	 * @param dataDirStr, dictionary data
 	 */
 	public static void createIndex(String indexDirStr, String dataDirStr, String indexField) {
+		createIndex(indexDirStr, dataDirStr, indexField, 1, IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, false);
+	}
+
+	/**
+	 * Main method to build index on dictionary files, every dictionary file 
+	 * (e.g. authorBNFa.tsv) is indexed by its own worker against a shared IndexWriter.
+	 * The index keeps a manifest of its source files (see DicoIndexManifest): when the 
+	 * index is updated (-updateIndex), only the documents of the files that have changed
+	 * or have been removed since the last build are deleted and re-added, otherwise the
+	 * index and its manifest are built from scratch (-createIndex, e.g. after a change of
+	 * the analyzer or of the fields). The files which cannot be indexed are logged and
+	 * left out of the manifest, so that the next update retries them.
+	 * 
+	 * @param indexDirStr, index folder
+	 * @param dataDirStr, dictionary data
+	 * @param indexField, name of the field of the name forms
+	 * @param threads, number of indexing workers
+	 * @param ramBufferSizeMB, RAM buffer of the IndexWriter 
+	 * (increase the max heap size of the JVM accordingly, eg add -Xmx1g)
+	 * @param update, whether only the changed files are re-indexed (when the index has a manifest)
+	 */
+	public static void createIndex(String indexDirStr, String dataDirStr, String indexField,
+			int threads, double ramBufferSizeMB, boolean update) {
 
 		final Path docDir = Paths.get(dataDirStr);
 		if (!Files.isReadable(docDir)) {
@@ -202,22 +274,80 @@ public class DicoProcessingNEL {
 		logger.info("Data dir: " + docDir);
 		Date start = new Date();
 		try {
-			logger.info("Indexing to directory '" + indexDirStr + "'...");
 			Directory dir = FSDirectory.open(Paths.get(indexDirStr));
+			DicoIndexManifest previous = update ? DicoIndexManifest.load(indexDirStr) : null;
+			boolean incremental = previous != null && DirectoryReader.indexExists(dir);
+			if (update && !incremental) {
+				logger.info("No index with a manifest in " + indexDirStr + ", building it from scratch");
+			}
+
+			// compare the dictionary files with the ones of the last build
+			DicoIndexManifest manifest = new DicoIndexManifest();
+			List<Path> toIndex = new ArrayList<Path>();
+			Set<String> toDelete = new HashSet<String>();
+			for (Path file : listDicoFiles(docDir)) {
+				String key = sourceKey(docDir, file);
+				long size = Files.size(file);
+				long lastModified = Files.getLastModifiedTime(file).toMillis();
+				DicoIndexManifest.Entry old = incremental ? previous.getEntries().get(key) : null;
+				if (old != null && old.size == size && old.lastModified == lastModified) {
+					manifest.getEntries().put(key, old);
+					continue;
+				}
+				String hash = DicoIndexManifest.hash(file);
+				manifest.getEntries().put(key, new DicoIndexManifest.Entry(size, lastModified, hash));
+				if (old != null && old.size == size && old.hash.equals(hash)) {
+					continue; // touched but not modified
+				}
+				if (incremental) {
+					toDelete.add(key); // changed file, or file which failed the last time
+				}
+				toIndex.add(file);
+			}
+			if (incremental) {
+				for (String key : previous.getEntries().keySet()) {
+					if (!manifest.getEntries().containsKey(key)) {
+						toDelete.add(key); // removed file
+					}
+				}
+				logger.info("Incremental indexing: " + toIndex.size() + " new or changed file(s), "
+						+ toDelete.size() + " file(s) to remove from the index, "
+						+ (manifest.getEntries().size() - toIndex.size()) + " unchanged file(s)");
+				if (toIndex.isEmpty() && toDelete.isEmpty()) {
+					manifest.save(indexDirStr);
+					dir.close();
+					logger.info("Index is up to date");
+					return;
+				}
+			}
+
+			logger.info("Indexing to directory '" + indexDirStr + "' with " + threads
+					+ " thread(s) and a RAM buffer of " + ramBufferSizeMB + "MB...");
 			Analyzer analyzer = new StandardAnalyzer();
 			IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
 
-			iwc.setOpenMode(OpenMode.CREATE);
-			// Optional: for better indexing performance, if you
-			// are indexing many documents, increase the RAM
-			// buffer. But if you do this, increase the max heap
-			// size to the JVM (eg add -Xmx512m or -Xmx1g):
-			// iwc.setRAMBufferSizeMB(256.0);
+			iwc.setOpenMode(incremental ? OpenMode.APPEND : OpenMode.CREATE);
+			iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+			if (threads > iwc.getMaxThreadStates()) {
+				iwc.setMaxThreadStates(threads);
+			}
 
 			IndexWriter writer = new IndexWriter(dir, iwc);
-			indexDocs(writer, docDir, indexField);
+			for (String key : toDelete) {
+				writer.deleteDocuments(new Term(SOURCE_FILE_FIELD, key));
+			}
+			Set<String> failed = indexFiles(writer, toIndex, docDir, indexField, threads);
+			for (String key : failed) {
+				writer.deleteDocuments(new Term(SOURCE_FILE_FIELD, key)); // partially indexed
+				manifest.getEntries().remove(key);
+			}
 
 			writer.close();
+			manifest.save(indexDirStr);
+			if (!failed.isEmpty()) {
+				logger.error(failed.size() + " dictionary file(s) could not be indexed and will be retried by "
+						+ "the next -updateIndex: " + failed);
+			}
 			Date end = new Date();
 			logger.info(end.getTime() - start.getTime()
 					+ " total milliseconds");
@@ -236,24 +366,168 @@ public class DicoProcessingNEL {
 	 */
 	static void indexDocs(final IndexWriter writer, Path path, final String indexField)
 			throws IOException {
+		indexDocs(writer, path, indexField, 1);
+	}
+
+	/**
+	 * Indexes a set of documents, one worker per file (IndexWriter is thread-safe).
+	 * @param writer
+	 * @param path
+	 * @param indexField
+	 * @param threads, number of indexing workers
+	 * @throws IOException
+	 */
+	static void indexDocs(final IndexWriter writer, Path path, final String indexField, int threads)
+			throws IOException {
+		Set<String> failed = indexFiles(writer, listDicoFiles(path), path, indexField, threads);
+		if (!failed.isEmpty()) {
+			throw new IOException("dictionary files not indexed: " + failed);
+		}
+	}
+
+	/**
+	 * Receives the URIs of a line of the dictionary files (see readDictionaryURIs).
+	 */
+	interface DicoLineHandler {
+
+		/**
+		 * @param uris, the URIs of the line (at least one)
+		 */
+		void line(List<String> uris);
+	}
+
+	/**
+	 * Reads the URIs of the dictionary files (alternative name, standard name and URIs
+	 * on every line), line by line.
+	 * @param dicoFolders, the dictionary folders separated by commas (nameMainFolderDico)
+	 * @param handler, called for every line with URIs
+	 * @throws IOException
+	 */
+	static void readDictionaryURIs(String dicoFolders, DicoLineHandler handler) throws IOException {
+		for (String folder : dicoFolders.split(",")) {
+			Path docDir = Paths.get(folder.trim());
+			if (!Files.isReadable(docDir)) {
+				System.out.println("Document directory '" + folder
+						+ "' does not exist or is not readable, please check the path");
+				continue;
+			}
+			for (Path file : listDicoFiles(docDir)) {
+				CSVReader reader = new CSVReader(new InputStreamReader(
+						Files.newInputStream(file), "UTF-8"), '\t',
+						CSVWriter.NO_QUOTE_CHARACTER);
+				String[] line;
+				while ((line = reader.readNext()) != null) {
+					List<String> uris = new ArrayList<String>();
+					for (int k = 2; k < line.length; k++) {
+						for (String uri : line[k].trim().split("\\s+")) {
+							if (!uri.isEmpty()) {
+								uris.add(uri);
+							}
+						}
+					}
+					if (!uris.isEmpty()) {
+						handler.line(uris);
+					}
+				}
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Lists the dictionary files of a folder.
+	 * @param path, the folder (or a single file)
+	 * @return the files
+	 * @throws IOException
+	 */
+	static List<Path> listDicoFiles(Path path) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
 		if (Files.isDirectory(path)) {
 			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
 				@Override
 				public FileVisitResult visitFile(Path file,
 						BasicFileAttributes attrs) throws IOException {
-					try {
-						if (!file.toFile().isHidden()) {
-							indexDoc(writer, file, attrs.lastModifiedTime().toMillis(), indexField);
-						}
-					} catch (IOException ignore) {
-						// don't index files that can't be read.
+					if (!file.toFile().isHidden()) {
+						files.add(file);
 					}
 					return FileVisitResult.CONTINUE;
 				}
 			});
 		} else {
-			indexDoc(writer, path, Files.getLastModifiedTime(path).toMillis(), indexField);
+			files.add(path);
+		}
+		return files;
+	}
+
+	/**
+	 * Name of a dictionary file as stored in the index and in its manifest.
+	 * @param dataDir, the dictionary folder
+	 * @param file, the dictionary file
+	 * @return the path of the file relative to the dictionary folder
+	 */
+	static String sourceKey(Path dataDir, Path file) {
+		if (Files.isDirectory(dataDir)) {
+			return dataDir.relativize(file).toString();
 		}
+		return file.getFileName().toString();
+	}
+
+	/**
+	 * Indexes the given dictionary files, one worker per file (IndexWriter is thread-safe).
+	 * @param writer
+	 * @param files, the files to index
+	 * @param dataDir, the dictionary folder
+	 * @param indexField
+	 * @param threads, number of indexing workers
+	 * @return the names (see sourceKey) of the files which could not be indexed (logged)
+	 * @throws IOException
+	 */
+	static Set<String> indexFiles(final IndexWriter writer, List<Path> files, final Path dataDir,
+			final String indexField, int threads) throws IOException {
+		Set<String> failed = new TreeSet<String>();
+		if (threads <= 1 || files.size() <= 1) {
+			for (Path file : files) {
+				try {
+					indexDoc(writer, file, Files.getLastModifiedTime(file).toMillis(), indexField,
+							sourceKey(dataDir, file));
+				} catch (IOException e) {
+					logger.error("error indexing dictionary file " + file, e);
+					failed.add(sourceKey(dataDir, file));
+				}
+			}
+			return failed;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (final Path file : files) {
+			tasks.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						indexDoc(writer, file, Files.getLastModifiedTime(file).toMillis(), indexField,
+								sourceKey(dataDir, file));
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+		for (int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).get();
+			} catch (InterruptedException e) {
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new IOException("indexing interrupted", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() instanceof RuntimeException && e.getCause().getCause() != null 
+						? e.getCause().getCause() : e.getCause();
+				logger.error("error indexing dictionary file " + files.get(i), cause);
+				failed.add(sourceKey(dataDir, files.get(i)));
+			}
+		}
+		return failed;
 	}
 
 	/**
@@ -266,13 +540,28 @@ public class DicoProcessingNEL {
 	 */
 	static void indexDoc(IndexWriter writer, Path file, long lastModified, String indexField)
 			throws IOException {
-		try {
+		indexDoc(writer, file, lastModified, indexField, file.getFileName().toString());
+	}
 
-			InputStream stream = Files.newInputStream(file);
-			CSVReader reader = new CSVReader(new InputStreamReader(
-					new FileInputStream(file.toFile()), "UTF-8"), '\t',
-					CSVWriter.NO_QUOTE_CHARACTER);
+	/**
+	 * Indexes a single document, every entry is tagged with the name of its source file.
+	 * @param writer
+	 * @param file
+	 * @param lastModified
+	 * @param indexField
+	 * @param sourceFile, name of the file in the manifest of the index
+	 * @throws IOException
+	 */
+	static void indexDoc(IndexWriter writer, Path file, long lastModified, String indexField,
+			String sourceFile) throws IOException {
+		long startFile = System.currentTimeMillis();
+		CSVReader reader = new CSVReader(new InputStreamReader(
+				new FileInputStream(file.toFile()), "UTF-8"), '\t',
+				CSVWriter.NO_QUOTE_CHARACTER);
+		try {
 			String[] line = {};
+			int nbDocs = 0;
+			StringBuilder uris = new StringBuilder();
 
 			while ((line = reader.readNext()) != null) {
 				// make a new, empty document
@@ -281,17 +570,22 @@ public class DicoProcessingNEL {
 						replaceNonAlphabeticCharacters(line[0]),
 						Field.Store.YES);
 				doc.add(pathField);
-				String uris = "";
+				uris.setLength(0);
 				for (int k = 2; k < line.length; k++) {
-					uris += "\t" + line[k];
+					uris.append("\t").append(line[k]);
 				}
-				doc.add(new StringField("uris", uris.trim(), Field.Store.YES));
+				doc.add(new StringField("uris", uris.toString().trim(), Field.Store.YES));
+				doc.add(new StringField(SOURCE_FILE_FIELD, sourceFile, Field.Store.NO));
 				writer.addDocument(doc);
+				nbDocs++;
 			}
-			logger.info("file processed " + file);
+			long elapsed = Math.max(1, System.currentTimeMillis() - startFile);
+			logger.info("file processed " + file + ": " + nbDocs + " documents in " + elapsed
+					+ " ms (" + (nbDocs * 1000L / elapsed) + " documents/second)");
+		} catch (RuntimeException e) {
+			throw new IOException("error building index from " + file, e);
+		} finally {
 			reader.close();
-		} catch (Exception e) {
-			System.err.println("error building index");
 		}
 	}
 
@@ -304,37 +598,9 @@ public class DicoProcessingNEL {
 	 */
 	public static Set<String> searchIndex(String index, String field,
 			String queryString) {
-		Set<String> results = new HashSet<String>();
-		try {
-			IndexReader reader = DirectoryReader.open(FSDirectory.open(Paths
-					.get(index)));
-
-			IndexSearcher searcher = new IndexSearcher(reader);
-			Analyzer analyzer = new KeywordAnalyzer();
-			QueryParser parser = new QueryParser(field, analyzer);
-			parser.setDefaultOperator(QueryParser.Operator.AND);
-			Query query = parser.parse(queryString.replaceAll(" ", "\\\\"));
-			//System.out.println("Searching for: " + query.toString());
-			// Date start = new Date();
-			TopDocs hits = searcher.search(query, 100);
-			// Date end = new Date();
-			// System.out.println("Time: " + (end.getTime() - start.getTime())
-			// + "ms");
-			ScoreDoc[] scoreDocs = hits.scoreDocs;
-			for (int n = 0; n < scoreDocs.length; ++n) {
-				ScoreDoc sd = scoreDocs[n];
-				int docId = sd.doc;
-				Document d = searcher.doc(docId);
-				results.add(d.get("uris"));
-				//System.out.println("Name: " + d.get("nameForm"));
-				//System.out.println("URIs found: " + d.get("uris"));
-			}
-			reader.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (ParseException e) {
-			e.printStackTrace();
-		}
+		DicoLookupService service = new DicoLookupService();
+		Set<String> results = service.search(index, field, queryString);
+		service.close();
 		return results;
 	}
 	
@@ -382,20 +648,31 @@ public class DicoProcessingNEL {
 	 * 
 	 * @param mentionsWithURIs
 	 *            , the mentions and their URIs for every possible candidate
-	 * @return the new index
+	 * @param registry
+	 *            , the IDs of the URIs
+	 * @return the new index, keyed by the IDs of the URIs and of their decoded forms
 	 */
-	public static Map<String, String> buildInvertedIndex(
-			Map<String, List<List<String>>> mentionsWithURIs) {
-		Map<String, String> index = new HashMap<String, String>();
+	public static Map<Integer, String> buildInvertedIndex(
+			Map<String, CandidateSet> mentionsWithURIs, UriRegistry registry) {
+		Map<Integer, String> index = new HashMap<Integer, String>();
+		Map<Integer, String> decodedIndex = new HashMap<Integer, String>();
 		for (String mention : mentionsWithURIs.keySet()) {
-			List<List<String>> listsOfURIsForMention = mentionsWithURIs
+			CandidateSet listsOfURIsForMention = mentionsWithURIs
 					.get(mention);
 			for (List<String> listOfUris : listsOfURIsForMention) {
 				for (String uri : listOfUris) {
-					index.put(uri, mention);
+					int id = registry.id(uri);
+					index.put(id, mention);
+					decodedIndex.put(registry.decodedId(id), mention);
 				}
 			}
 		}
+		//graph vertices are decoded URIs, raw URIs take precedence
+		for (Map.Entry<Integer, String> entry : decodedIndex.entrySet()) {
+			if (!index.containsKey(entry.getKey())) {
+				index.put(entry.getKey(), entry.getValue());
+			}
+		}
 		logger.info("Finished buildInvertedIndex");
 		return index;
 	}
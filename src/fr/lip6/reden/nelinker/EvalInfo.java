@@ -1,7 +1,5 @@
 package fr.lip6.reden.nelinker;
 
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Evaluation information per mention
@@ -12,7 +10,7 @@ public class EvalInfo {
 	
 	private String mention;
 	private String manualURI;
-	private List<List<String>> candUris = new ArrayList<List<String>>(0);	
+	private CandidateSet candUris = new CandidateSet();	
 	private String chosenUri;
 	private Boolean choiceIsCorrect = false; 
 	private Boolean correctURIisInCandSet = false;
@@ -41,10 +39,10 @@ public class EvalInfo {
 	public void setManualURI(String manualURI) {
 		this.manualURI = manualURI;
 	}
-	public List<List<String>> getCandUris() {
+	public CandidateSet getCandUris() {
 		return candUris;
 	}
-	public void setCandUris(List<List<String>> candUris) {
+	public void setCandUris(CandidateSet candUris) {
 		this.candUris = candUris;
 	}
 	public String getChosenUri() {
@@ -0,0 +1,218 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Persistent ledger of the URIs whose RDF data could not be retrieved (not found,
+ * bad syntax, timeout...). A failed URI is not requested again before its retry
+ * time, which doubles after every failure (exponential backoff). The ledger is a
+ * TSV file (by default fetch-failures.tsv in rdfData).
+ *
+ * @author Brando & Frontini
+ */
+public class FailureLedger {
+
+	private static Logger logger = Logger.getLogger(FailureLedger.class);
+
+	public static final String LEDGER_FILE = "fetch-failures.tsv";
+
+	private final File file;
+
+	private final long baseDelay;
+
+	private final long maxDelay;
+
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	private boolean changed = false;
+
+	/**
+	 * Failures of one URI.
+	 */
+	public static class Entry {
+		public String errorClass;
+		public int attempts;
+		public long lastAttempt;
+
+		public Entry(String errorClass, int attempts, long lastAttempt) {
+			this.errorClass = errorClass;
+			this.attempts = attempts;
+			this.lastAttempt = lastAttempt;
+		}
+	}
+
+	/**
+	 * @param file, the ledger file
+	 * @param baseDelayMinutes, delay before the first retry
+	 * @param maxDelayMinutes, maximum delay between two retries
+	 */
+	private FailureLedger(File file, long baseDelayMinutes, long maxDelayMinutes) {
+		this.file = file;
+		this.baseDelay = baseDelayMinutes * 60000L;
+		this.maxDelay = Math.max(baseDelayMinutes, maxDelayMinutes) * 60000L;
+	}
+
+	/**
+	 * Reads the ledger (empty if the file does not exist yet).
+	 * @param file, the ledger file
+	 * @param baseDelayMinutes, delay before the first retry
+	 * @param maxDelayMinutes, maximum delay between two retries
+	 * @return the ledger
+	 */
+	public static FailureLedger load(File file, long baseDelayMinutes, long maxDelayMinutes) {
+		FailureLedger ledger = new FailureLedger(file, baseDelayMinutes, maxDelayMinutes);
+		if (!file.exists()) {
+			return ledger;
+		}
+		try {
+			BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String s;
+			while ((s = br.readLine()) != null) {
+				String[] li = s.split("\t");
+				if (li.length == 4) {
+					try {
+						ledger.entries.put(li[0], new Entry(li[1], Integer.parseInt(li[2]), Long.parseLong(li[3])));
+					} catch (NumberFormatException e) {
+						logger.info("skip bad line of " + file + ": " + s);
+					}
+				}
+			}
+			br.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return ledger;
+	}
+
+	/**
+	 * Reads the ledger configured in the properties (fetchFailureLedger,
+	 * fetchRetryMinutes and fetchRetryMaxMinutes).
+	 * @param prop, the configuration
+	 * @return the ledger
+	 */
+	public static FailureLedger load(Properties prop) {
+		String path = prop.getProperty("fetchFailureLedger");
+		File file = path != null && !path.trim().isEmpty() ? new File(path.trim())
+				: new File(prop.getProperty("rdfData"), LEDGER_FILE);
+		return load(file, Long.parseLong(prop.getProperty("fetchRetryMinutes", "60").trim()),
+				Long.parseLong(prop.getProperty("fetchRetryMaxMinutes", "43200").trim()));
+	}
+
+	/**
+	 * Delay before retrying a URI after a given number of failures.
+	 * @param attempts, number of failed attempts
+	 * @return the delay in milliseconds
+	 */
+	long delay(int attempts) {
+		long delay = baseDelay;
+		for (int i = 1; i < attempts && delay < maxDelay; i++) {
+			delay *= 2;
+		}
+		return Math.min(delay, maxDelay);
+	}
+
+	/**
+	 * Time from which a failed URI can be requested again.
+	 * @param entry, the failures of the URI
+	 * @return the time in milliseconds
+	 */
+	public long nextRetry(Entry entry) {
+		return entry.lastAttempt + delay(entry.attempts);
+	}
+
+	/**
+	 * Whether the URI has failed recently and must not be requested yet.
+	 * @param uri, the URI
+	 * @return true if the URI must be skipped
+	 */
+	public synchronized boolean shouldSkip(String uri) {
+		Entry entry = entries.get(uri);
+		return entry != null && System.currentTimeMillis() < nextRetry(entry);
+	}
+
+	/**
+	 * Records a failed attempt.
+	 * @param uri, the URI
+	 * @param errorClass, the kind of error (e.g. the exception class)
+	 */
+	public synchronized void recordFailure(String uri, String errorClass) {
+		Entry entry = entries.get(uri);
+		if (entry == null) {
+			entries.put(uri, new Entry(errorClass, 1, System.currentTimeMillis()));
+		} else {
+			entry.errorClass = errorClass;
+			entry.attempts++;
+			entry.lastAttempt = System.currentTimeMillis();
+		}
+		changed = true;
+	}
+
+	/**
+	 * Records a successful attempt, the URI is removed from the ledger.
+	 * @param uri, the URI
+	 */
+	public synchronized void recordSuccess(String uri) {
+		if (entries.remove(uri) != null) {
+			changed = true;
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the ledger if it has changed (the previous file is replaced atomically).
+	 */
+	public synchronized void save() {
+		if (!changed) {
+			return;
+		}
+		try {
+			File tmp = new File(file.getPath() + ".tmp");
+			Writer out = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), "UTF-8");
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				out.write(e.getKey() + "\t" + e.getValue().errorClass + "\t" + e.getValue().attempts
+						+ "\t" + e.getValue().lastAttempt + "\n");
+			}
+			out.close();
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			changed = false;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Prints the failed URIs with their number of attempts and next retry time.
+	 * @param out, where to print
+	 */
+	public synchronized void print(PrintStream out) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		long now = System.currentTimeMillis();
+		out.println("URI\terror\tattempts\tlast attempt\tnext retry");
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			long next = nextRetry(e.getValue());
+			out.println(e.getKey() + "\t" + e.getValue().errorClass + "\t" + e.getValue().attempts + "\t"
+					+ format.format(new Date(e.getValue().lastAttempt)) + "\t"
+					+ (next <= now ? "now" : format.format(new Date(next))));
+		}
+		out.println(entries.size() + " failed URIs in " + file);
+	}
+}
@@ -0,0 +1,148 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.log4j.Logger;
+
+/**
+ * RDF cache store with one file<key>.n3 file per resource (rdfCacheBackend=files).
+ * Descriptions in the binary format are stored in file<key>.rdfb files, an N3 file
+ * more recent than the binary file of the same key (e.g. edited by hand) is preferred.
+ * A binary file which cannot be decoded is logged and its N3 file is read instead
+ * (nothing is read from a binary file which is not valid, see BinaryRDFCodec.decode).
+ *
+ * @author Brando & Frontini
+ */
+public class FileRDFCacheStore extends RDFCacheStore {
+
+	private static Logger logger = Logger.getLogger(FileRDFCacheStore.class);
+
+	private static final String N3_SUFFIX = ".n3";
+
+	private static final String BINARY_SUFFIX = ".rdfb";
+
+	private final File dir;
+
+	public FileRDFCacheStore(File dir) {
+		this.dir = dir;
+	}
+
+	private File fileOf(String key) {
+		return new File(dir, "file" + key + N3_SUFFIX);
+	}
+
+	private File binaryFileOf(String key) {
+		return new File(dir, "file" + key + BINARY_SUFFIX);
+	}
+
+	@Override
+	public boolean contains(String key) {
+		if (binaryFileOf(key).length() > 0) {
+			return true;
+		}
+		File f = fileOf(key);
+		try {
+			// small files only may contain nothing but white spaces
+			return f.exists() && f.length() > 0
+					&& (f.length() > 64 || !FileUtils.readFileToString(f).trim().isEmpty());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean read(String key, Model model) {
+		File f = fileOf(key);
+		File b = binaryFileOf(key);
+		if (b.exists() && (!f.exists() || f.lastModified() <= b.lastModified())) {
+			try {
+				parse(Files.readAllBytes(b.toPath()), canonicalSink(model));
+				return true;
+			} catch (IOException e) { //falls back to N3
+				logger.warn("cannot read the RDF data of " + b + " (N3 file used if any): " + e.getMessage());
+			}
+		}
+		if (!f.exists()) {
+			return false;
+		}
+		RDFDataMgr.parse(canonicalSink(model), f.getPath());
+		return true;
+	}
+
+	@Override
+	public boolean stream(String key, StreamRDF sink) {
+		File f = fileOf(key);
+		File b = binaryFileOf(key);
+		if (b.exists() && (!f.exists() || f.lastModified() <= b.lastModified())) {
+			try {
+				parse(Files.readAllBytes(b.toPath()), canonicalSink(sink));
+				return true;
+			} catch (IOException e) { //falls back to N3
+				logger.warn("cannot read the RDF data of " + b + " (N3 file used if any): " + e.getMessage());
+			}
+		}
+		if (!f.exists()) {
+			return false;
+		}
+		RDFDataMgr.parse(canonicalSink(sink), f.getPath());
+		return true;
+	}
+
+	/**
+	 * The file is written in a temporary file first and then moved, partial
+	 * files never appear.
+	 */
+	@Override
+	public void put(String key, byte[] data) throws IOException {
+		boolean isBinary = BinaryRDFCodec.isBinary(data);
+		File f = isBinary ? binaryFileOf(key) : fileOf(key);
+		File tmp = File.createTempFile(f.getName(), ".part", dir);
+		try {
+			OutputStream out = Files.newOutputStream(tmp.toPath());
+			out.write(data);
+			out.close();
+			try {
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			tmp.delete();
+		}
+		if (!isBinary) {
+			binaryFileOf(key).delete(); //outdated
+		}
+	}
+
+	@Override
+	public Collection<String> keys() {
+		Collection<String> keys = new TreeSet<String>();
+		String[] names = dir.list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.startsWith("file") && name.endsWith(N3_SUFFIX)) {
+					keys.add(name.substring("file".length(), name.length() - N3_SUFFIX.length()));
+				} else if (name.startsWith("file") && name.endsWith(BINARY_SUFFIX)) {
+					keys.add(name.substring("file".length(), name.length() - BINARY_SUFFIX.length()));
+				}
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public void close() {
+	}
+}
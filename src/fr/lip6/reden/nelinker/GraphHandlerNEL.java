@@ -1,23 +1,16 @@
 package fr.lip6.reden.nelinker;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 
@@ -28,7 +21,6 @@ import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.util.FileManager;
 import org.apache.jena.util.iterator.ExtendedIterator;
 
 /**
@@ -42,87 +34,235 @@ public class GraphHandlerNEL {
 	
 	/**
 	 * Stores RDF files into a local folder.
-	 * @param rdfData
+	 * @param rdfCache
 	 * @param mentionsWithURIs
 	 * @param baseUris
+	 * @param registry
+	 * @param fetcher
 	 */
-	public static void retrieveBaseRDFData(String rdfData, Map<String, List<List<String>>> mentionsWithURIs,
-			String baseUris) {
+	public static void retrieveBaseRDFData(RDFCacheStore rdfCache, Map<String, CandidateSet> mentionsWithURIs,
+			String baseUris, UriRegistry registry, RDFFetcher fetcher) {
 		
-		File dirF = new File(rdfData);
-		if (!dirF.exists())
-			dirF.mkdir();
-		List<String> alreadyProcessedURI = new ArrayList<String>();
-		for (List<List<String>> uriLists : mentionsWithURIs.values()) {
+		BitSet alreadyProcessedURI = new BitSet();
+		List<String> toFetch = new ArrayList<String>();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
 			for (List<String> uriList : uriLists) {
 				for (String uri : uriList) {
 					//only allow uris from the KBs configured in the config.properties (baseURIs)
 					if (uri.contains(baseUris.trim())) { 
-						if (!alreadyProcessedURI.contains(uri)) {
-							retrieveRDF(uri, rdfData);
-							alreadyProcessedURI.add(uri);
+						int id = registry.id(uri);
+						if (!alreadyProcessedURI.get(id)) {
+							toFetch.add(uri);
+							alreadyProcessedURI.set(id);
 						}
 					}
 				}
 			}
-		}		
+		}
+		fetcher.fetchAll(toFetch, rdfCache);
 	}
 	
 	/**
-	 * Create RDF model with URIs from base KB from local files.
-	 * @param rdfData
+	 * Where the cached descriptions of a paragraph are loaded: a Jena model
+	 * (fusionBackend=jena) or a subject index (fusionBackend=index).
+	 */
+	private interface Descriptions {
+
+		/**
+		 * Loads a cached description.
+		 * @param key, the key of the description
+		 * @return false if there is no description for the key
+		 */
+		boolean load(String key);
+
+		/**
+		 * Objects of the equivalence links of a resource in the loaded descriptions.
+		 * @param uri, the resource
+		 * @return the equivalent URIs
+		 */
+		List<String> equivalentsOf(String uri);
+	}
+
+	/**
+	 * Descriptions loaded into a Jena model.
+	 */
+	private static class ModelDescriptions implements Descriptions {
+		private final RDFCacheStore rdfCache;
+		private final Model model;
+		private final Property prop;
+
+		private ModelDescriptions(RDFCacheStore rdfCache, Model model, Property prop) {
+			this.rdfCache = rdfCache;
+			this.model = model;
+			this.prop = prop;
+		}
+
+		@Override
+		public boolean load(String key) {
+			return rdfCache.read(key, model);
+		}
+
+		@Override
+		public List<String> equivalentsOf(String uri) {
+			List<String> equivalents = new ArrayList<String>();
+			SimpleSelector ss = new SimpleSelector(
+					model.getResource(CanonicalURIs.canonical(uri)), prop, (RDFNode) null);
+			ExtendedIterator<Statement> iter = model.listStatements(ss);
+			while (iter.hasNext()) {
+				equivalents.add(iter.next().getObject().toString());
+			}
+			return equivalents;
+		}
+	}
+
+	/**
+	 * Descriptions streamed into a subject index, no model is built.
+	 */
+	private static class IndexedDescriptions implements Descriptions {
+		private final RDFCacheStore rdfCache;
+		private final SubjectTripleIndex.Builder builder;
+		private final UriRegistry registry;
+
+		private IndexedDescriptions(RDFCacheStore rdfCache, SubjectTripleIndex.Builder builder,
+				UriRegistry registry) {
+			this.rdfCache = rdfCache;
+			this.builder = builder;
+			this.registry = registry;
+		}
+
+		@Override
+		public boolean load(String key) {
+			return rdfCache.stream(key, builder);
+		}
+
+		@Override
+		public List<String> equivalentsOf(String uri) {
+			List<String> equivalents = new ArrayList<String>();
+			for (int object : builder.equivalents(registry.canonicalId(registry.id(uri)))) {
+				equivalents.add(registry.get(object));
+			}
+			return equivalents;
+		}
+	}
+
+	/**
+	 * Create RDF model with URIs from base KB from the local cache.
+	 * @param rdfCache
 	 * @param mentionsWithURIs
 	 * @param baseUri
+	 * @param registry
 	 * @return
 	 */
-	public static Model loadBaseRDFModel(String rdfData, Map<String, List<List<String>>> mentionsWithURIs,
-			String baseUri) {
+	public static Model loadBaseRDFModel(RDFCacheStore rdfCache, Map<String, CandidateSet> mentionsWithURIs,
+			String baseUri, UriRegistry registry) {
 		
-		Model model = ModelFactory.createDefaultModel();
-		File dirF = new File(rdfData);
-		if (dirF.exists()) {			
-			List<String> alreadyProcessedURI = new ArrayList<String>();
-			for (List<List<String>> uriLists : mentionsWithURIs.values()) {
-				for (List<String> uriList : uriLists) {
-					for (String uri : uriList) {
-						//only allow uris from the KBs configured in the config.properties (baseURIs)
-						if (uri.contains(baseUri.trim())) { 
-							if (!alreadyProcessedURI.contains(uri)) {
-								if (new File(rdfData + "/file" + Util.replaceNonAlphabeticCharacters(uri)+ ".n3").exists()) {
-									model.read(rdfData + "/file"
-											+ Util.replaceNonAlphabeticCharacters(uri) + ".n3");
-									alreadyProcessedURI.add(uri);
-								}
+		Model model = rdfCache.createModel();
+		loadBaseRDFData(new ModelDescriptions(rdfCache, model, null), mentionsWithURIs, baseUri, registry);
+		return model;
+	}
+
+	/**
+	 * Loads the descriptions of the URIs from base KB from the local cache.
+	 * @param descriptions, where the descriptions are loaded
+	 * @param mentionsWithURIs
+	 * @param baseUri
+	 * @param registry
+	 */
+	private static void loadBaseRDFData(Descriptions descriptions, Map<String, CandidateSet> mentionsWithURIs,
+			String baseUri, UriRegistry registry) {
+		BitSet alreadyProcessedURI = new BitSet();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
+			for (List<String> uriList : uriLists) {
+				for (String uri : uriList) {
+					//only allow uris from the KBs configured in the config.properties (baseURIs)
+					if (uri.contains(baseUri.trim())) { 
+						int id = registry.id(uri);
+						if (!alreadyProcessedURI.get(id)) {
+							if (descriptions.load(registry.fileName(id))) {
+								alreadyProcessedURI.set(id);
 							}
 						}
 					}
 				}
 			}
-		}		
-		return model;
+		}
 	}
 
 	/**
 	 * Download RDF data from the URIs of resources referenced via equivalence links and loads them into the given model.
-	 * Equivalent resources may also be available in the dictionary.
-	 * @param rdfData
+	 * Equivalent resources may also be available in the dictionary. All the missing resources are
+	 * downloaded first (concurrently), then loaded. With a sameAs closure, the equivalents of a base
+	 * resource (also transitive ones) are looked up in the closure instead of the model.
+	 * @param rdfCache
 	 * @param mentionsWithURIs
 	 * @param baseURL
 	 * @param crawlSameAs
 	 * @param sameAsproperty
+	 * @param baseURIsAndEquivalentURIs
+	 * @param kBsLocalNoNetwork
+	 * @param registry
+	 * @param fetcher
+	 * @param closure, the sameAs closure (may be null)
 	 */
-	public static Model retrieveAndLoadSameAsRDFData(Model model, String rdfData, Map<String, List<List<String>>> mentionsWithURIs,
+	public static Model retrieveAndLoadSameAsRDFData(Model model, RDFCacheStore rdfCache, Map<String, CandidateSet> mentionsWithURIs,
 			String baseURL, String crawlSameAs, String sameAsproperty, Map<String,Set<String>> baseURIsAndEquivalentURIs, 
-			String kBsLocalNoNetwork) {
+			String kBsLocalNoNetwork, UriRegistry registry, RDFFetcher fetcher, SameAsClosure closure) {
 		
 		Property prop = model
 				.getProperty(sameAsproperty);
-		File dirF = new File(rdfData);
-		if (!dirF.exists())
-			dirF.mkdir();
+		retrieveAndLoadSameAsRDFData(new ModelDescriptions(rdfCache, model, prop), rdfCache, mentionsWithURIs, 
+				baseURL, crawlSameAs, baseURIsAndEquivalentURIs, kBsLocalNoNetwork, registry, fetcher, closure);
+		/*try {
+			RDFDataMgr.write(new FileOutputStream(new File("output/rdfgraph.txt")), model, Lang.TURTLE) ;
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		}*/
+		return model;
+	}
+
+	/**
+	 * Streams the base RDF data and the RDF data of the equivalent resources (downloaded
+	 * first if needed, see retrieveAndLoadSameAsRDFData) from the local cache into a
+	 * subject index (fusionBackend=index): Jena only parses the descriptions, no model
+	 * is built.
+	 * @param rdfCache
+	 * @param mentionsWithURIs
+	 * @param baseURL
+	 * @param crawlSameAs
+	 * @param sameAsproperty
+	 * @param baseURIsAndEquivalentURIs
+	 * @param kBsLocalNoNetwork
+	 * @param profile, the triples of the predicates dropped by the profile are not indexed
+	 * @param registry
+	 * @param fetcher
+	 * @param closure, the sameAs closure (may be null)
+	 * @return the index
+	 */
+	public static SubjectTripleIndex loadRDFIndex(RDFCacheStore rdfCache, Map<String, CandidateSet> mentionsWithURIs,
+			String baseURL, String crawlSameAs, String sameAsproperty, Map<String,Set<String>> baseURIsAndEquivalentURIs, 
+			String kBsLocalNoNetwork, PredicateProfile profile, UriRegistry registry, RDFFetcher fetcher, 
+			SameAsClosure closure) {
+		SubjectTripleIndex.Builder builder = new SubjectTripleIndex.Builder(registry, profile, 
+				registry.id(sameAsproperty));
+		Descriptions descriptions = new IndexedDescriptions(rdfCache, builder, registry);
+		loadBaseRDFData(descriptions, mentionsWithURIs, baseURL, registry);
+		retrieveAndLoadSameAsRDFData(descriptions, rdfCache, mentionsWithURIs, baseURL, crawlSameAs, 
+				baseURIsAndEquivalentURIs, kBsLocalNoNetwork, registry, fetcher, closure);
+		return builder.build();
+	}
+
+	private static void retrieveAndLoadSameAsRDFData(Descriptions descriptions, RDFCacheStore rdfCache, 
+			Map<String, CandidateSet> mentionsWithURIs, String baseURL, String crawlSameAs, 
+			Map<String,Set<String>> baseURIsAndEquivalentURIs, String kBsLocalNoNetwork, UriRegistry registry, 
+			RDFFetcher fetcher, SameAsClosure closure) {
+		//download equivalent resources
+		if (kBsLocalNoNetwork.equalsIgnoreCase("false")) {
+			fetcher.fetchAll(sameAsURIsToFetch(descriptions, mentionsWithURIs, baseURL, crawlSameAs, registry, closure), 
+					rdfCache);
+		}
 		
-		List<String> alreadyProcessedURI = new ArrayList<String>();
-		for (List<List<String>> uriLists : mentionsWithURIs.values()) {
+		BitSet alreadyProcessedURI = new BitSet();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
 			for (List<String> uriList : uriLists) {
 				Set<String> sameAsUris = new HashSet<String>();
 				String baseURI = "";
@@ -130,52 +270,27 @@ public class GraphHandlerNEL {
 					//case 1	
 					if (uri.contains(baseURL.trim()) ) { //base KB  
 						baseURI = uri;
-						//look for sameAs links within the model
-						Resource individualSameAs = model.getResource(uri);
-						SimpleSelector ss = new SimpleSelector(
-									individualSameAs, prop, (RDFNode) null);
-						ExtendedIterator<Statement> iter = model.listStatements(ss);
-						while (iter.hasNext()) {
-							Statement stmt = iter.next();
-							RDFNode object = stmt.getObject();
-							String newURI = Util.replaceNonAlphabeticCharacters(Util.decompose(object.toString()));
-							String filename = rdfData + "/file" + newURI + ".n3";
-							if (!crawlSameAs.equalsIgnoreCase("ALL")) {
-								if (object.toString().startsWith(crawlSameAs)) {
-									//download equivalent resource using a give prefix
-									if (kBsLocalNoNetwork.equalsIgnoreCase("false"))
-										retrieveRDF(Util.decompose(object.toString()), rdfData);																
-									if (new File(filename).exists()) {
-										if (!alreadyProcessedURI.contains(object.toString())) { //avoid loading twice
-											sameAsUris.add(Util.decompose(object.toString()));	
-											model.read(filename);
-											alreadyProcessedURI.add(object.toString());
-										}
-									}
-								}
-							} else {
-								//download equivalent resource (without filter)
-								if (kBsLocalNoNetwork.equalsIgnoreCase("false"))
-									retrieveRDF(Util.decompose(object.toString()), rdfData);
-								if (new File(filename).exists()) {
-									if (!alreadyProcessedURI.contains(object.toString())) { //avoid loading twice
-										sameAsUris.add(Util.decompose(object.toString()));	
-										model.read(filename);
-										alreadyProcessedURI.add(object.toString());
+						//look for sameAs links within the loaded descriptions (or the closure)
+						for (String object : equivalentsOf(uri, descriptions, closure)) {
+							int objectId = registry.id(object);
+							String decodedURI = registry.decoded(objectId);
+							//equivalent resource using a give prefix (or without filter)
+							if (crawlSameAs.equalsIgnoreCase("ALL") || object.startsWith(crawlSameAs)) {
+								if (!alreadyProcessedURI.get(objectId)) { //avoid loading twice
+									if (descriptions.load(registry.fileName(registry.decodedId(objectId)))) {
+										sameAsUris.add(decodedURI);	
+										alreadyProcessedURI.set(objectId);
 									}
 								}
 							}
 						}							
 					} else { //case 2: if URI of equivalent resources are available in the dictionary, these are loaded
-						String newURI = Util.replaceNonAlphabeticCharacters(Util.decompose(uri));
-						String filename = rdfData + "/file" + newURI + ".n3";
-						if (kBsLocalNoNetwork.equalsIgnoreCase("false"))
-							retrieveRDF(Util.decompose(uri), rdfData);	//download data															
-						if (new File(filename).exists()) {
-							if (!alreadyProcessedURI.contains(uri)) { //avoid loading twice
-								model.read(filename); //load it
-								sameAsUris.add(Util.decompose(uri));
-								alreadyProcessedURI.add(uri);
+						int uriId = registry.id(uri);
+						String decodedURI = registry.decoded(uriId);
+						if (!alreadyProcessedURI.get(uriId)) { //avoid loading twice
+							if (descriptions.load(registry.fileName(registry.decodedId(uriId)))) { //load it
+								sameAsUris.add(decodedURI);
+								alreadyProcessedURI.set(uriId);
 							}
 						}													
 					}										
@@ -188,41 +303,87 @@ public class GraphHandlerNEL {
 				
 			}
 		}
-		/*try {
-			RDFDataMgr.write(new FileOutputStream(new File("output/rdfgraph.txt")), model, Lang.TURTLE) ;
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}*/
-		return model;
+	}
+	
+	/**
+	 * Equivalent resources of a base KB resource: from the closure if it knows the
+	 * resource, otherwise the objects of its equivalence links in the loaded descriptions.
+	 * @param uri
+	 * @param descriptions
+	 * @param closure, the sameAs closure (may be null)
+	 * @return the equivalent URIs
+	 */
+	private static List<String> equivalentsOf(String uri, Descriptions descriptions, SameAsClosure closure) {
+		if (closure != null && closure.contains(uri)) {
+			return closure.equivalents(uri);
+		}
+		return descriptions.equivalentsOf(uri);
+	}
+	
+	/**
+	 * URIs of the equivalent resources to download: the ones referenced via equivalence
+	 * links by the base KB resources in the loaded descriptions (or the closure) and the ones available in the dictionary.
+	 * @param descriptions
+	 * @param mentionsWithURIs
+	 * @param baseURL
+	 * @param crawlSameAs
+	 * @param registry
+	 * @param closure, the sameAs closure (may be null)
+	 * @return the decoded URIs
+	 */
+	private static Set<String> sameAsURIsToFetch(Descriptions descriptions, 
+			Map<String, CandidateSet> mentionsWithURIs, String baseURL, String crawlSameAs, 
+			UriRegistry registry, SameAsClosure closure) {
+		Set<String> toFetch = new LinkedHashSet<String>();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
+			for (List<String> uriList : uriLists) {
+				for (String uri : uriList) {
+					if (uri.contains(baseURL.trim())) {
+						for (String object : equivalentsOf(uri, descriptions, closure)) {
+							if (crawlSameAs.equalsIgnoreCase("ALL") || object.startsWith(crawlSameAs)) {
+								toFetch.add(registry.decoded(registry.id(object)));
+							}
+						}
+					} else {
+						toFetch.add(registry.decoded(registry.id(uri)));
+					}
+				}
+			}
+		}
+		return toFetch;
 	}
 	
 	/**
 	 * Fuse and JGraphT conversion.
-	 * @param model
+	 * @param model, the model (may be null with an index)
 	 * @param mentionsWithURIs
-	 * @param relsFile
+	 * @param profile, the weights of the predicates (and the dropped predicates)
 	 * @param crawlSameAs
 	 * @param sameAsProperty
 	 * @param baseURIsAndEquivalentURIs
 	 * @param baseURI
-	 * @return
+	 * @param registry
+	 * @param index, the triples of the model indexed by subject (null to query the model)
+	 * @return the graph, vertices are the registry IDs of the decoded URIs (or literals)
 	 */
 	@SuppressWarnings("rawtypes")
-	public static SimpleDirectedWeightedGraph<String, LabeledEdge> fuseRDFGraphsIntoJGTGraph(
-			Model model, Map<String, List<List<String>>> mentionsWithURIs, 
-			File relsFile, String crawlSameAs, String sameAsProperty,
-			Map<String,Set<String>> baseURIsAndEquivalentURIs, String baseURI) {
+	public static SimpleDirectedWeightedGraph<Integer, LabeledEdge> fuseRDFGraphsIntoJGTGraph(
+			Model model, Map<String, CandidateSet> mentionsWithURIs, 
+			PredicateProfile profile, String crawlSameAs, String sameAsProperty,
+			Map<String,Set<String>> baseURIsAndEquivalentURIs, String baseURI, UriRegistry registry,
+			SubjectTripleIndex index) {
 
 		baseURI = baseURI.trim();
-		SimpleDirectedWeightedGraph<String, LabeledEdge> graph = new SimpleDirectedWeightedGraph<String, LabeledEdge>(
+		SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph = new SimpleDirectedWeightedGraph<Integer, LabeledEdge>(
 				LabeledEdge.class);
-		Property prop = model.getProperty(sameAsProperty);
+		Property prop = model != null ? model.getProperty(sameAsProperty) : null;
+		int sameAsId = registry.id(sameAsProperty);
 
 		// the set of URIs of mentions		
 		Set<String> mentions = mentionsWithURIs.keySet();
 		List<String> baseUris = new ArrayList<String>();
 		for (String mention : mentions) {
-			List<List<String>> mentionUris = mentionsWithURIs.get(mention);
+			CandidateSet mentionUris = mentionsWithURIs.get(mention);
 			for (List<String> uriL : mentionUris) {
 				for (String uri : uriL) {
 					if (uri.contains(baseURI.trim())) { //it is an URI from the base KB
@@ -232,155 +393,93 @@ public class GraphHandlerNEL {
 			}
 		}
 		
-		//assigning weights (if relation file available)
-		HashMap<String, Double> relsAndWei = new HashMap<String, Double>();		
-		try {
-			if (relsFile != null) {
-				if (relsFile.exists()) {
-					FileReader fr = new FileReader(relsFile);
-					BufferedReader br = new BufferedReader(fr); 
-					String s; 
-					while((s = br.readLine()) != null) { 
-						String[] li = s.split(" ");
-						relsAndWei.put(li[0].toLowerCase(), Double.parseDouble(li[1]));
-					} 
-					fr.close();
-				}
-			}
-		
-			for (String uri : baseUris) {
-				Resource individual = model.getResource(uri);
-				Set<String> sameAsURIsIndividual = baseURIsAndEquivalentURIs.get(individual.getURI());
-	
-				String vertex1 = Util.decompose(uri);
-				graph.addVertex(vertex1);
-				for (String uriAlias : sameAsURIsIndividual) {
-					if (!uri.equalsIgnoreCase(uriAlias)) { //avoiding loops
-						Resource individualSameAs = model.getResource(uriAlias);
-						// obtaining properties of every URI concerning a single
-						// individual
-						SimpleSelector ss = new SimpleSelector(individualSameAs,
-								(Property) null, (RDFNode) null);
-						ExtendedIterator<Statement> iter = model.listStatements(ss);
-						Boolean isEmpt = false;
-						while (iter.hasNext()) {
-							isEmpt = true;
-							Statement stmt = iter.next();
-							Property predicate = stmt.getPredicate();
-							RDFNode object = stmt.getObject();
-							if (!predicate.equals(prop)) { // other predicates != than sameAs
-								String vertex2 = Util.decompose(object.toString());
-								if (!vertex1.equalsIgnoreCase(vertex2)) {
-									graph.addVertex(vertex2);
-									LabeledEdge edge = new LabeledEdge<String>(
-											vertex1, vertex2, predicate.getURI()); 
-									//relation weight in parameter file
-									Set<String> relsUris = relsAndWei.keySet();
-									if (relsUris.contains(predicate.getURI().toLowerCase())) {
-										for (String relsU : relsUris) {
-											if (relsU.equals(predicate.getURI().toLowerCase())) {
-												graph.setEdgeWeight(edge, relsAndWei.get(relsU));
-											}
-										}
-									} else {
-										graph.setEdgeWeight(edge, 1.0);
-									}
-									graph.addEdge(vertex1, vertex2, edge);
-									//System.out.println("VERTEX1 "+vertex1 + " VERTEX2: "+vertex2 + " edge: "+edge);
-								}
-							}
-						}
-						if (!isEmpt) { //test different encoding, particular to old DBpedia URIs in ASCII-US, find proper fix
-							String[] part = uriAlias.split("/");
-							String encoUri =  URLEncoder.encode(part[part.length-1], "UTF-8");
-							individualSameAs = model.getResource(uriAlias.replace(part[part.length-1], encoUri));
-							
-							// obtaining properties of every URI concerning a single
-							// individual
-							ss = new SimpleSelector(individualSameAs,
-									(Property) null, (RDFNode) null);
-							iter = model.listStatements(ss);
-							while (iter.hasNext()) {
-								Statement stmt = iter.next();
-								Property predicate = stmt.getPredicate();
-								RDFNode object = stmt.getObject();
-								if (!predicate.equals(prop)) { // other predicates != than sameAs
-									String vertex2 = Util.decompose(object.toString());
-									if (!vertex1.equalsIgnoreCase(vertex2)) {
-										graph.addVertex(vertex2);
-										LabeledEdge edge = new LabeledEdge<String>(
-												vertex1, vertex2, predicate.getURI()); 
-										//relation weight in parameter file
-										Set<String> relsUris = relsAndWei.keySet();
-										if (relsUris.contains(predicate.getURI().toLowerCase())) {
-											for (String relsU : relsUris) {
-												if (relsU.equals(predicate.getURI().toLowerCase())) {
-													graph.setEdgeWeight(edge, relsAndWei.get(relsU));
-												}
-											}
-										} else {
-											graph.setEdgeWeight(edge, 1.0);
-										}
-										graph.addEdge(vertex1, vertex2, edge);
-										//System.out.println("VERTEX1 "+vertex1 + " VERTEX2: "+vertex2 + " edge: "+edge);
-									}
-								}
+		for (String uri : baseUris) {
+			Set<String> sameAsURIsIndividual = baseURIsAndEquivalentURIs.get(uri);
+
+			int vertex1 = registry.decodedId(registry.id(uri));
+			int foldedVertex1 = registry.caseFoldedId(vertex1);
+			graph.addVertex(vertex1);
+			for (String uriAlias : sameAsURIsIndividual) {
+				if (!uri.equalsIgnoreCase(uriAlias) && index != null) { //avoiding loops
+					//descriptions are cached with canonical URIs, whatever the encoding of the alias
+					int pos = index.find(registry.canonicalId(registry.id(uriAlias)));
+					if (pos >= 0) {
+						addIndexedEdges(graph, index, pos, vertex1, foldedVertex1, sameAsId, 
+								profile, registry);
+					}
+				} else if (!uri.equalsIgnoreCase(uriAlias)) { //avoiding loops
+					Resource individualSameAs = model.getResource(registry.canonical(registry.id(uriAlias)));
+					// obtaining properties of every URI concerning a single
+					// individual
+					SimpleSelector ss = new SimpleSelector(individualSameAs,
+							(Property) null, (RDFNode) null);
+					ExtendedIterator<Statement> iter = model.listStatements(ss);
+					while (iter.hasNext()) {
+						Statement stmt = iter.next();
+						Property predicate = stmt.getPredicate();
+						RDFNode object = stmt.getObject();
+						if (!predicate.equals(prop) && profile.keeps(predicate.getURI())) { // other predicates != than sameAs
+							int vertex2 = registry.decodedId(registry.id(object.toString()));
+							if (foldedVertex1 != registry.caseFoldedId(vertex2)) {
+								graph.addVertex(vertex2);
+								LabeledEdge edge = new LabeledEdge<Integer>(
+										vertex1, vertex2, predicate.getURI()); 
+								//relation weight in parameter file
+								graph.setEdgeWeight(edge, profile.weight(predicate.getURI()));
+								graph.addEdge(vertex1, vertex2, edge);
+								//System.out.println("VERTEX1 "+vertex1 + " VERTEX2: "+vertex2 + " edge: "+edge);
 							}
-							
 						}
-					}				
-				}
+					}
+				}				
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 		logger.info("vertex size: " + graph.vertexSet().size());
 		logger.info("edge size: " + graph.edgeSet().size());
 		return graph;
 
 	}
+	
+	/**
+	 * Adds the edges of the (predicate, object) pairs of an indexed subject, sameAs
+	 * links excepted.
+	 * @param graph
+	 * @param index
+	 * @param pos, position of the subject in the index
+	 * @param vertex1, vertex of the base resource
+	 * @param foldedVertex1, case folded vertex of the base resource
+	 * @param sameAsId, registry ID of the sameAs property
+	 * @param profile, the weights of the predicates
+	 * @param registry
+	 */
+	@SuppressWarnings("rawtypes")
+	private static void addIndexedEdges(SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph, 
+			SubjectTripleIndex index, int pos, int vertex1, int foldedVertex1, int sameAsId, 
+			PredicateProfile profile, UriRegistry registry) {
+		for (int pair = index.start(pos); pair < index.end(pos); pair++) {
+			int predicate = index.predicate(pair);
+			if (predicate == sameAsId || !profile.keeps(predicate, registry)) { // other predicates != than sameAs
+				continue;
+			}
+			int vertex2 = registry.decodedId(index.object(pair));
+			if (foldedVertex1 != registry.caseFoldedId(vertex2)) {
+				graph.addVertex(vertex2);
+				LabeledEdge edge = new LabeledEdge<Integer>(vertex1, vertex2, registry.get(predicate));
+				//relation weight in parameter file
+				graph.setEdgeWeight(edge, profile.weight(predicate, registry));
+				graph.addEdge(vertex1, vertex2, edge);
+			}
+		}
+	}
 
 
 	/**
 	 * Retrieves the RDF from a given resource by its URI.
 	 * @param uri
-	 * @param dir
+	 * @param rdfCache
 	 */	
-	public static void retrieveRDF(String uri, String dir) {
-		try {
-			File f = new File(dir + "/file" + Util.replaceNonAlphabeticCharacters(uri) + ".n3");
-			// to go faster (remove f.exists if we want
-			// to update local triples)
-			if (!f.exists() || FileUtils.readFileToString(f).trim().isEmpty()) {
-				Model model = ModelFactory.createDefaultModel();
-				if (uri.contains("dbpedia")) {
-					InputStream in = FileManager.get().open(uri+".ntriples"); //TODO can be generic, to test
-					if (in != null) {
-						model.read(in, null, "N3");	
-					} else {
-						logger.info("skip URI: " + uri);
-						return;
-					}
-				} else {
-					model.read(uri);
-				}
-
-				OutputStream fileOutputStream = new FileOutputStream(f);
-				OutputStreamWriter out = new OutputStreamWriter(
-						fileOutputStream, "UTF-8");
-				model.write(out, "N3");
-				logger.info("downloaded from uri: " + uri + " and file " + dir + "/file"
-						+ Util.replaceNonAlphabeticCharacters(uri) + ".n3");				
-				out.close();
-				fileOutputStream.close();				
-
-			} else {				
-			}
-		} catch (Exception ignore) {
-			logger.info("problem with URI (not found or bad syntax): " + uri); //not found or bad syntax, etc. so ignore
-		}
+	public static void retrieveRDF(String uri, RDFCacheStore rdfCache) {
+		RDFFetcher.fetch(uri, rdfCache);
 	}
 	
 }
@@ -0,0 +1,330 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.Arrays;
+
+/**
+ * Centrality measures computed on a CSR snapshot of the graph (see CsrGraph), with
+ * primitive arrays only. They give the results of their dk.aaue.sna counterparts:
+ * <ul>
+ * <li>degree: sum of the weights of the edges of a vertex divided by n - 1 (DegreeCentrality);</li>
+ * <li>closeness: inverse of the sum of the weighted distances to the other vertices, 0 if
+ * one of them cannot be reached (FreemanClosenessCentrality, with Dijkstra or a breadth
+ * first search instead of Floyd-Warshall);</li>
+ * <li>betweenness: Brandes algorithm on the unweighted graph, min-max normalized
+ * (BrandesBetweennessCentrality);</li>
+ * <li>eigenvector: the iteration of EigenvectorCentrality (100 iterations at most, tolerance
+ * 1e-4 per vertex, scores divided by the highest one, all 0 without convergence), started
+ * from a uniform vector instead of a random one, so that the scores are the same from
+ * one run to the other.</li>
+ * </ul>
+ * Scores are indexed by the positions of the vertices in the snapshot.
+ *
+ * @author Brando & Frontini
+ */
+public class NativeCentrality {
+
+	private static final int EIGENVECTOR_ITERATIONS = 100;
+
+	private static final double EIGENVECTOR_TOLERANCE = 1e-4;
+
+	/**
+	 * Weighted degree centrality.
+	 * @param graph, the snapshot
+	 * @return the scores
+	 */
+	public static double[] degree(CsrGraph graph) {
+		int n = graph.size();
+		double[] scores = new double[n];
+		for (int v = 0; v < n; v++) {
+			scores[v] = graph.weightedDegree(v) / (n - 1);
+		}
+		return scores;
+	}
+
+	/**
+	 * Freeman closeness centrality.
+	 * @param graph, the snapshot
+	 * @return the scores
+	 */
+	public static double[] closeness(CsrGraph graph) {
+		int n = graph.size();
+		double[] scores = new double[n];
+		double[] dist = new double[n];
+		int[] queue = new int[n];
+		IndexedHeap heap = graph.hasUnitWeights() ? null : new IndexedHeap(n, dist);
+		for (int s = 0; s < n; s++) {
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+			dist[s] = 0;
+			int reached = 0;
+			double sum = 0;
+			if (heap == null) { //breadth first search
+				int head = 0;
+				int tail = 0;
+				queue[tail++] = s;
+				while (head < tail) {
+					int v = queue[head++];
+					reached++;
+					sum += dist[v];
+					for (int arc = graph.start(v); arc < graph.end(v); arc++) {
+						int w = graph.target(arc);
+						if (dist[w] == Double.POSITIVE_INFINITY) {
+							dist[w] = dist[v] + 1;
+							queue[tail++] = w;
+						}
+					}
+				}
+			} else { //Dijkstra
+				heap.add(s);
+				while (!heap.isEmpty()) {
+					int v = heap.poll();
+					reached++;
+					sum += dist[v];
+					for (int arc = graph.start(v); arc < graph.end(v); arc++) {
+						int w = graph.target(arc);
+						double d = dist[v] + graph.weight(arc);
+						if (d < dist[w]) {
+							dist[w] = d;
+							heap.update(w);
+						}
+					}
+				}
+			}
+			scores[s] = reached < n ? 0.0 : 1.0 / sum;
+		}
+		return scores;
+	}
+
+	/**
+	 * Brandes betweenness centrality, min-max normalized.
+	 * @param graph, the snapshot
+	 * @return the scores
+	 */
+	public static double[] betweenness(CsrGraph graph) {
+		double[] scores = new double[graph.size()];
+		Brandes brandes = new Brandes(graph);
+		for (int s = 0; s < graph.size(); s++) {
+			brandes.accumulate(s, scores, 1.0);
+		}
+		minMaxNormalize(scores);
+		return scores;
+	}
+
+	/**
+	 * Eigenvector centrality.
+	 * @param graph, the snapshot
+	 * @return the scores
+	 */
+	public static double[] eigenvector(CsrGraph graph) {
+		int n = graph.size();
+		double[] x = new double[n];
+		double[] last = new double[n];
+		Arrays.fill(x, 1.0 / n);
+		for (int iteration = 0; iteration < EIGENVECTOR_ITERATIONS; iteration++) {
+			double[] tmp = last;
+			last = x;
+			x = tmp;
+			double sum = 0;
+			for (int v = 0; v < n; v++) {
+				double val = last[v];
+				for (int arc = graph.start(v); arc < graph.end(v); arc++) {
+					val += 0.01 + last[graph.target(arc)];
+				}
+				x[v] = val;
+				sum += val;
+			}
+			double err = 0;
+			for (int v = 0; v < n; v++) {
+				if (sum != 0) {
+					x[v] /= sum;
+				}
+				err += Math.abs(x[v] - last[v]);
+			}
+			if (err < n * EIGENVECTOR_TOLERANCE) {
+				double max = 0;
+				for (int v = 0; v < n; v++) {
+					max = Math.max(max, x[v]);
+				}
+				if (max == 0) {
+					max = 1;
+				}
+				for (int v = 0; v < n; v++) {
+					x[v] /= max;
+				}
+				return x;
+			}
+		}
+		return new double[n];
+	}
+
+	/**
+	 * Scales the scores to [0, 1] ((score - min) / (max - min)).
+	 * @param scores, the scores
+	 */
+	static void minMaxNormalize(double[] scores) {
+		if (scores.length == 0) {
+			return;
+		}
+		double min = scores[0];
+		double max = scores[0];
+		for (double score : scores) {
+			min = Math.min(min, score);
+			max = Math.max(max, score);
+		}
+		double range = max - min;
+		if (range == 0) {
+			range = 1;
+		}
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = (scores[i] - min) / range;
+		}
+	}
+
+	/**
+	 * Shortest paths from a source and dependencies of the source on the other vertices
+	 * (Brandes), the arrays are reused from one source to the other.
+	 */
+	static class Brandes {
+		private final CsrGraph graph;
+		private final int[] dist;
+		private final double[] sigma;
+		private final double[] delta;
+		/** vertices in the order they are reached (the queue, then read backwards) */
+		private final int[] order;
+
+		Brandes(CsrGraph graph) {
+			this.graph = graph;
+			int n = graph.size();
+			dist = new int[n];
+			sigma = new double[n];
+			delta = new double[n];
+			order = new int[n];
+			Arrays.fill(dist, -1);
+		}
+
+		/**
+		 * Adds the dependencies of a source on the other vertices to the scores.
+		 * @param s, the source
+		 * @param scores, the scores
+		 * @param scale, factor of the dependencies
+		 */
+		void accumulate(int s, double[] scores, double scale) {
+			int head = 0;
+			int tail = 0;
+			dist[s] = 0;
+			sigma[s] = 1;
+			order[tail++] = s;
+			while (head < tail) {
+				int v = order[head++];
+				for (int arc = graph.start(v); arc < graph.end(v); arc++) {
+					int w = graph.target(arc);
+					if (dist[w] < 0) {
+						dist[w] = dist[v] + 1;
+						order[tail++] = w;
+					}
+					if (dist[w] == dist[v] + 1) {
+						sigma[w] += sigma[v];
+					}
+				}
+			}
+			for (int i = tail - 1; i >= 0; i--) {
+				int w = order[i];
+				for (int arc = graph.start(w); arc < graph.end(w); arc++) {
+					int v = graph.target(arc);
+					if (dist[v] == dist[w] - 1) { //predecessor
+						delta[v] += sigma[v] / sigma[w] * (1 + delta[w]);
+					}
+				}
+				if (w != s) {
+					scores[w] += scale * delta[w];
+				}
+			}
+			for (int i = 0; i < tail; i++) {
+				int v = order[i];
+				dist[v] = -1;
+				sigma[v] = 0;
+				delta[v] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Binary min-heap of vertices ordered by their distances, with decrease-key.
+	 */
+	private static class IndexedHeap {
+		private final int[] heap;
+		private final int[] index;
+		private final double[] keys;
+		private int size = 0;
+
+		private IndexedHeap(int n, double[] keys) {
+			heap = new int[n];
+			index = new int[n];
+			Arrays.fill(index, -1);
+			this.keys = keys;
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private void add(int v) {
+			heap[size] = v;
+			index[v] = size;
+			up(size++);
+		}
+
+		/** adds the vertex or moves it up after its key has decreased */
+		private void update(int v) {
+			if (index[v] < 0) {
+				add(v);
+			} else {
+				up(index[v]);
+			}
+		}
+
+		private int poll() {
+			int v = heap[0];
+			index[v] = -2; //done for this source
+			size--;
+			if (size > 0) {
+				heap[0] = heap[size];
+				index[heap[0]] = 0;
+				down(0);
+			}
+			return v;
+		}
+
+		private void up(int i) {
+			int v = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (keys[heap[parent]] <= keys[v]) {
+					break;
+				}
+				heap[i] = heap[parent];
+				index[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = v;
+			index[v] = i;
+		}
+
+		private void down(int i) {
+			int v = heap[i];
+			while (2 * i + 1 < size) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+					child++;
+				}
+				if (keys[heap[child]] >= keys[v]) {
+					break;
+				}
+				heap[i] = heap[child];
+				index[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = v;
+			index[v] = i;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.log4j.Logger;
+
+/**
+ * RDF cache store keeping all the descriptions in a single append-only file
+ * (rdfcache.dat in rdfData, rdfCacheBackend=packed). Every record is the key and the
+ * description of a resource (N3 or binary), a newer record of the same key replaces the
+ * older one.
+ * The index (key to position of the description) is rebuilt when the store is opened,
+ * a lookup is then a single positioned read.
+ * The file is locked while the store is open: two REDEN runs cannot share the packed
+ * cache of the same rdfData folder (each one would append at its own end of the file),
+ * the second one fails. Replaced records are never removed, so -importRDFCache and
+ * -convertRDFCache make the file grow by a copy of the imported or converted
+ * descriptions; the space taken by replaced records is logged when the store is opened.
+ *
+ * @author Brando & Frontini
+ */
+public class PackedRDFCacheStore extends RDFCacheStore {
+
+	private static Logger logger = Logger.getLogger(PackedRDFCacheStore.class);
+
+	public static final String STORE_FILE = "rdfcache.dat";
+
+	private static final byte[] MAGIC = "REDENRC1".getBytes(StandardCharsets.US_ASCII);
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	/** files opened by this JVM (closing a second channel would release the lock of the first one) */
+	private static final Set<String> opened = new HashSet<String>();
+
+	private final FileLock lock;
+
+	private long end;
+
+	/** key to {position, length} of the description */
+	private final ConcurrentHashMap<String, long[]> index = new ConcurrentHashMap<String, long[]>();
+
+	public PackedRDFCacheStore(File dir) throws IOException {
+		this.file = new File(dir, STORE_FILE).getCanonicalFile();
+		synchronized (opened) {
+			if (!opened.add(file.getPath())) {
+				throw new IOException("the RDF cache " + file + " is already open");
+			}
+		}
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.lock = channel.tryLock();
+		if (lock == null) {
+			channel.close();
+			synchronized (opened) {
+				opened.remove(file.getPath());
+			}
+			throw new IOException("the RDF cache " + file + " is used by another REDEN run "
+					+ "(a packed RDF cache can only be opened by one run at a time)");
+		}
+		try {
+			if (channel.size() == 0) {
+				writeFully(ByteBuffer.wrap(MAGIC), 0);
+				end = MAGIC.length;
+			} else {
+				end = scan();
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+		long live = 0;
+		for (long[] entry : index.values()) {
+			live += entry[1];
+		}
+		logger.info("RDF cache " + file + " opened with " + index.size() + " descriptions (" + live
+				+ " bytes, " + (end - MAGIC.length - live) + " bytes of keys and replaced records)");
+	}
+
+	/**
+	 * Rebuilds the index, a partial record at the end of the file (interrupted
+	 * write) is removed.
+	 * @return the position of the end of the last complete record
+	 * @throws IOException
+	 */
+	private long scan() throws IOException {
+		long size = channel.size();
+		// read through the locked channel and not closed: closing another descriptor of
+		// the file would release the lock
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel.position(0)), 65536));
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException("not an RDF cache file: " + file);
+		}
+		long pos = MAGIC.length;
+		while (pos < size) {
+			try {
+				int keyLength = in.readInt();
+				long dataPos = pos + 8 + keyLength;
+				if (keyLength < 0 || dataPos > size) {
+					break;
+				}
+				byte[] key = new byte[keyLength];
+				in.readFully(key);
+				int dataLength = in.readInt();
+				if (dataLength < 0 || dataPos + dataLength > size) {
+					break;
+				}
+				long skipped = 0;
+				while (skipped < dataLength) {
+					long s = in.skip(dataLength - skipped);
+					if (s <= 0) {
+						throw new EOFException();
+					}
+					skipped += s;
+				}
+				index.put(new String(key, StandardCharsets.UTF_8), new long[] { dataPos, dataLength });
+				pos = dataPos + dataLength;
+			} catch (EOFException e) {
+				break;
+			}
+		}
+		if (pos < size) {
+			logger.info("removing partial record at the end of " + file);
+			channel.truncate(pos);
+		}
+		return pos;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	@Override
+	public boolean contains(String key) {
+		return index.containsKey(key);
+	}
+
+	@Override
+	public boolean read(String key, Model model) {
+		long[] entry = index.get(key);
+		if (entry == null) {
+			return false;
+		}
+		try {
+			parse(data(entry), canonicalSink(model));
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	@Override
+	public boolean stream(String key, StreamRDF sink) {
+		long[] entry = index.get(key);
+		if (entry == null) {
+			return false;
+		}
+		try {
+			parse(data(entry), canonicalSink(sink));
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private byte[] data(long[] entry) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+		long position = entry[0];
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			position += read;
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Appends a record, blank descriptions are not stored.
+	 */
+	@Override
+	public synchronized void put(String key, byte[] data) throws IOException {
+		if (isBlank(data)) {
+			return;
+		}
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(8 + keyBytes.length + data.length);
+		buffer.putInt(keyBytes.length).put(keyBytes).putInt(data.length).put(data);
+		buffer.flip();
+		writeFully(buffer, end);
+		index.put(key, new long[] { end + 8 + keyBytes.length, data.length });
+		end += buffer.capacity();
+	}
+
+	@Override
+	public Collection<String> keys() {
+		return new TreeSet<String>(index.keySet());
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			channel.force(true);
+			lock.release();
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		synchronized (opened) {
+			opened.remove(file.getPath());
+		}
+	}
+}
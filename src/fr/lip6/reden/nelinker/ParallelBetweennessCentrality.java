@@ -0,0 +1,93 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Brandes betweenness centrality (see NativeCentrality.betweenness) with the single
+ * source accumulations spread over a fork/join pool. The sources are split in halves
+ * down to blocks of a fixed size, every block accumulates its own partial scores and
+ * the partial scores are summed in the same order as the split. The block size only
+ * depends on the size of the graph, so the scores are the same whatever the number of
+ * threads and the scheduling.
+ *
+ * @author Brando & Frontini
+ */
+public class ParallelBetweennessCentrality {
+
+	/** smallest number of sources of a block */
+	private static final int MIN_BLOCK = 16;
+
+	/** largest number of blocks */
+	private static final int MAX_BLOCKS = 256;
+
+	/**
+	 * Accumulations of a range of sources.
+	 */
+	private static class Sources extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+		private final CsrGraph graph;
+		private final int[] sources;
+		private final int from;
+		private final int to;
+		private final int block;
+
+		private Sources(CsrGraph graph, int[] sources, int from, int to, int block) {
+			this.graph = graph;
+			this.sources = sources;
+			this.from = from;
+			this.to = to;
+			this.block = block;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from <= block) {
+				double[] scores = new double[graph.size()];
+				NativeCentrality.Brandes brandes = new NativeCentrality.Brandes(graph);
+				for (int i = from; i < to; i++) {
+					brandes.accumulate(sources != null ? sources[i] : i, scores, 1.0);
+				}
+				return scores;
+			}
+			int middle = (from + to) >>> 1;
+			Sources left = new Sources(graph, sources, from, middle, block);
+			Sources right = new Sources(graph, sources, middle, to, block);
+			right.fork();
+			double[] scores = left.compute();
+			double[] rightScores = right.join();
+			for (int v = 0; v < scores.length; v++) {
+				scores[v] += rightScores[v];
+			}
+			return scores;
+		}
+	}
+
+	/**
+	 * Betweenness centrality, min-max normalized.
+	 * @param graph, the snapshot
+	 * @param pool, the pool running the accumulations
+	 * @return the scores, by position of the vertices in the snapshot
+	 */
+	public static double[] betweenness(CsrGraph graph, ForkJoinPool pool) {
+		double[] scores = accumulate(graph, null, pool);
+		NativeCentrality.minMaxNormalize(scores);
+		return scores;
+	}
+
+	/**
+	 * Sums of the dependencies of some sources on the vertices (not normalized).
+	 * @param graph, the snapshot
+	 * @param sources, positions of the sources (null for all the vertices)
+	 * @param pool, the pool running the accumulations
+	 * @return the sums, by position of the vertices in the snapshot
+	 */
+	static double[] accumulate(CsrGraph graph, int[] sources, ForkJoinPool pool) {
+		int count = sources != null ? sources.length : graph.size();
+		if (count == 0) {
+			return new double[graph.size()];
+		}
+		int block = Math.max(MIN_BLOCK, (count + MAX_BLOCKS - 1) / MAX_BLOCKS);
+		return pool.invoke(new Sources(graph, sources, 0, count, block));
+	}
+}
@@ -0,0 +1,133 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Weights of the predicates turned into edges of the graph, read once per run from the
+ * relations file (-relsFile, one "property weight" per line, properties are case
+ * insensitive). Unlisted predicates have the weight 1, or are dropped when only the
+ * listed predicates are kept (onlyListedPredicates=true). Once resolved, the weight of
+ * a predicate is found by its registry ID (as long as the registry does not change).
+ *
+ * @author Brando & Frontini
+ */
+public class PredicateProfile {
+
+	private static Logger logger = Logger.getLogger(PredicateProfile.class);
+
+	/** weight of the dropped predicates */
+	private static final double DROPPED = Double.NEGATIVE_INFINITY;
+
+	private final Map<String, Double> weights;
+
+	private final boolean onlyListed;
+
+	/** weights of the predicates already resolved, by registry ID (predicates only) */
+	private final Map<Integer, Double> weightsById = new HashMap<Integer, Double>();
+
+	/** the registry of the IDs of weightsById */
+	private UriRegistry resolvedRegistry = null;
+
+	private PredicateProfile(Map<String, Double> weights, boolean onlyListed) {
+		this.weights = weights;
+		this.onlyListed = onlyListed;
+	}
+
+	/**
+	 * Reads the relations file.
+	 * @param relsFile, the file (null for no file: every predicate has the weight 1)
+	 * @param onlyListed, whether the unlisted predicates are dropped
+	 * @return the profile
+	 */
+	public static PredicateProfile load(File relsFile, boolean onlyListed) {
+		Map<String, Double> weights = new HashMap<String, Double>();
+		if (relsFile != null && relsFile.exists()) {
+			try {
+				BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(relsFile), "UTF-8"));
+				String s;
+				while ((s = br.readLine()) != null) {
+					String[] li = s.trim().split("\\s+");
+					if (li[0].isEmpty() || li[0].startsWith("#")) {
+						continue;
+					}
+					try {
+						weights.put(li[0].toLowerCase(), li.length > 1 ? Double.parseDouble(li[1]) : 1.0);
+					} catch (NumberFormatException e) {
+						logger.info("skip bad line of " + relsFile + ": " + s);
+					}
+				}
+				br.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			logger.info(weights.size() + " weighted relations read from " + relsFile
+					+ (onlyListed ? ", other relations are dropped" : ""));
+		} else if (onlyListed) {
+			logger.info("no relations file, all the relations are kept");
+			onlyListed = false;
+		}
+		return new PredicateProfile(weights, onlyListed);
+	}
+
+	/**
+	 * Whether edges are created for the predicate.
+	 * @param predicate, the predicate URI
+	 * @return false if the predicate is dropped
+	 */
+	public boolean keeps(String predicate) {
+		return !onlyListed || weights.containsKey(predicate.toLowerCase());
+	}
+
+	/**
+	 * Weight of the edges of a predicate.
+	 * @param predicate, the predicate URI
+	 * @return the weight (1 if the predicate is not listed)
+	 */
+	public double weight(String predicate) {
+		Double weight = weights.get(predicate.toLowerCase());
+		return weight != null ? weight : 1.0;
+	}
+
+	/**
+	 * Whether edges are created for the predicate.
+	 * @param predicate, the registry ID of the predicate URI
+	 * @param registry, the URI registry
+	 * @return false if the predicate is dropped
+	 */
+	public boolean keeps(int predicate, UriRegistry registry) {
+		return resolve(predicate, registry) != DROPPED;
+	}
+
+	/**
+	 * Weight of the edges of a predicate.
+	 * @param predicate, the registry ID of the predicate URI
+	 * @param registry, the URI registry
+	 * @return the weight (1 if the predicate is not listed)
+	 */
+	public double weight(int predicate, UriRegistry registry) {
+		double weight = resolve(predicate, registry);
+		return weight != DROPPED ? weight : 1.0;
+	}
+
+	private synchronized double resolve(int predicate, UriRegistry registry) {
+		if (registry != resolvedRegistry) { //IDs of another document
+			weightsById.clear();
+			resolvedRegistry = registry;
+		}
+		Double weight = weightsById.get(predicate);
+		if (weight == null) {
+			String uri = registry.get(predicate);
+			weight = keeps(uri) ? weight(uri) : DROPPED;
+			weightsById.put(predicate, weight);
+		}
+		return weight;
+	}
+}
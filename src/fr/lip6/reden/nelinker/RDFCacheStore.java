@@ -0,0 +1,342 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.log4j.Logger;
+
+/**
+ * Local cache of the RDF descriptions of the dereferenced resources (rdfData).
+ * Descriptions are keyed by the normalized form of the URI (see key), the
+ * backend is chosen with the rdfCacheBackend property:
+ * files (one file<key>.n3 per resource, default) or packed (a single
+ * append-only file, see PackedRDFCacheStore). New descriptions are written in
+ * the format given by the rdfCacheFormat property: n3 (default) or binary
+ * (see BinaryRDFCodec), both formats can be read. The URIs of the descriptions are
+ * written in their canonical form (see CanonicalURIs), and also canonicalized when they
+ * are read, for the descriptions cached by older versions (a warning suggests to
+ * convert the cache once with -convertRDFCache).
+ *
+ * @author Brando & Frontini
+ */
+public abstract class RDFCacheStore {
+
+	private static Logger logger = Logger.getLogger(RDFCacheStore.class);
+
+	/** whether new descriptions are written in the binary format */
+	protected boolean binary = false;
+
+	/** whether a description with non-canonical URIs has been read */
+	private volatile boolean unconverted = false;
+
+	/**
+	 * Canonicalizes the URIs of the triples sent to a stream.
+	 */
+	private class CanonicalSink extends StreamRDFWrapper {
+
+		private CanonicalSink(StreamRDF sink) {
+			super(sink);
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			Node s = CanonicalURIs.canonical(triple.getSubject());
+			Node p = CanonicalURIs.canonical(triple.getPredicate());
+			Node o = CanonicalURIs.canonical(triple.getObject());
+			if (s != triple.getSubject() || p != triple.getPredicate() || o != triple.getObject()) {
+				triple = Triple.create(s, p, o);
+				if (!unconverted) {
+					unconverted = true;
+					logger.warn("the RDF cache contains descriptions with non-canonical URIs (cached by an older "
+							+ "version), they are canonicalized when read; convert the cache once with "
+							+ "-convertRDFCache to avoid it");
+				}
+			}
+			super.triple(triple);
+		}
+	}
+
+	/**
+	 * A stream which canonicalizes the URIs of the triples before sending them to a sink.
+	 * @param sink, the sink
+	 * @return the stream
+	 */
+	protected StreamRDF canonicalSink(StreamRDF sink) {
+		return new CanonicalSink(sink);
+	}
+
+	/**
+	 * A stream which canonicalizes the URIs of the triples before adding them to a model.
+	 * @param model, the model
+	 * @return the stream
+	 */
+	protected StreamRDF canonicalSink(Model model) {
+		return new CanonicalSink(StreamRDFLib.graph(model.getGraph()));
+	}
+
+	/**
+	 * Opens the cache store of the given folder (descriptions written as N3).
+	 * @param backend, files or packed
+	 * @param rdfData, the folder of the cache
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static RDFCacheStore open(String backend, String rdfData) throws IOException {
+		return open(backend, "n3", rdfData);
+	}
+
+	/**
+	 * Opens the cache store of the given folder.
+	 * @param backend, files or packed
+	 * @param format, n3 or binary, format of the new descriptions
+	 * @param rdfData, the folder of the cache
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static RDFCacheStore open(String backend, String format, String rdfData) throws IOException {
+		File dir = new File(rdfData.trim());
+		if (!dir.exists())
+			dir.mkdirs();
+		RDFCacheStore store;
+		if (backend == null || backend.trim().isEmpty() || backend.trim().equalsIgnoreCase("files")) {
+			store = new FileRDFCacheStore(dir);
+		} else if (backend.trim().equalsIgnoreCase("packed")) {
+			store = new PackedRDFCacheStore(dir);
+		} else {
+			throw new IllegalArgumentException("unknown rdfCacheBackend: " + backend);
+		}
+		if (format != null && format.trim().equalsIgnoreCase("binary")) {
+			store.binary = true;
+		} else if (format != null && !format.trim().isEmpty() && !format.trim().equalsIgnoreCase("n3")) {
+			throw new IllegalArgumentException("unknown rdfCacheFormat: " + format);
+		}
+		return store;
+	}
+
+	/**
+	 * Key of the description of a URI (same as the name of the files in rdfData).
+	 * @param uri, the URI
+	 * @return the key
+	 */
+	public static String key(String uri) {
+		return Util.replaceNonAlphabeticCharacters(uri);
+	}
+
+	/**
+	 * Creates an empty model to load descriptions into.
+	 * @return the model
+	 */
+	public Model createModel() {
+		return ModelFactory.createDefaultModel();
+	}
+
+	/**
+	 * Whether a (non-empty) description is cached for the key.
+	 * @param key, the key
+	 * @return true if the description is cached
+	 */
+	public abstract boolean contains(String key);
+
+	/**
+	 * Loads the cached description into the model, with its URIs in their canonical form.
+	 * @param key, the key
+	 * @param model, the model
+	 * @return false if there is no description for the key
+	 */
+	public abstract boolean read(String key, Model model);
+
+	/**
+	 * Sends the triples of the cached description to a stream, with their URIs in their
+	 * canonical form, without building a model (by default, the description is loaded
+	 * in a temporary model).
+	 * @param key, the key
+	 * @param sink, receives the triples
+	 * @return false if there is no description for the key
+	 */
+	public boolean stream(String key, StreamRDF sink) {
+		Model model = ModelFactory.createDefaultModel();
+		if (!read(key, model)) {
+			return false;
+		}
+		StreamOps.sendTriplesToStream(model.getGraph(), sink);
+		return true;
+	}
+
+	/**
+	 * Stores a description given as N3 or in the binary format (the previous one is replaced).
+	 * @param key, the key
+	 * @param data, the description in UTF-8 N3 or in the binary format
+	 * @throws IOException
+	 */
+	public abstract void put(String key, byte[] data) throws IOException;
+
+	/**
+	 * Keys of all the cached descriptions.
+	 * @return the keys
+	 */
+	public abstract Collection<String> keys();
+
+	/**
+	 * Stores the description of a resource (the previous one is replaced), with
+	 * its URIs in their canonical form.
+	 * @param key, the key
+	 * @param model, the description
+	 * @throws IOException
+	 */
+	public void write(String key, Model model) throws IOException {
+		model = CanonicalURIs.canonicalize(model);
+		if (binary && !model.isEmpty()) {
+			put(key, BinaryRDFCodec.encode(model.getGraph()));
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStreamWriter out = new OutputStreamWriter(bytes, "UTF-8");
+		model.write(out, "N3");
+		out.close();
+		put(key, bytes.toByteArray());
+	}
+
+	/**
+	 * Releases the store.
+	 */
+	public abstract void close();
+
+	/**
+	 * Loads a description given as N3 or in the binary format into the model.
+	 * @param data, the description
+	 * @param model, the model
+	 * @throws IOException
+	 */
+	static void parse(byte[] data, Model model) throws IOException {
+		if (BinaryRDFCodec.isBinary(data)) {
+			BinaryRDFCodec.decode(data, model.getGraph());
+		} else {
+			model.read(new ByteArrayInputStream(data), null, "N3");
+		}
+	}
+
+	/**
+	 * Sends the triples of a description given as N3 or in the binary format to a stream.
+	 * @param data, the description
+	 * @param sink, receives the triples
+	 * @throws IOException
+	 */
+	static void parse(byte[] data, StreamRDF sink) throws IOException {
+		if (BinaryRDFCodec.isBinary(data)) {
+			BinaryRDFCodec.decode(data, sink);
+		} else {
+			RDFDataMgr.parse(sink, new ByteArrayInputStream(data), Lang.N3);
+		}
+	}
+
+	/**
+	 * Whether some N3 content contains nothing but white spaces.
+	 * @param n3, the content
+	 * @return true if blank
+	 */
+	static boolean isBlank(byte[] n3) {
+		for (byte b : n3) {
+			if (!Character.isWhitespace(b)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Imports an existing rdfData folder (file<key>.n3 files) into the store, with
+	 * the URIs in their canonical form (descriptions that cannot be parsed are
+	 * imported as they are).
+	 * @param rdfData, the folder
+	 * @param store, the target store
+	 * @return the number of imported descriptions
+	 * @throws IOException
+	 */
+	public static int importFolder(String rdfData, RDFCacheStore store) throws IOException {
+		Date start = new Date();
+		String[] names = new File(rdfData.trim()).list();
+		if (names == null) {
+			System.out.println("RDF data directory '" + rdfData
+					+ "' does not exist or is not readable, please check the path");
+			return 0;
+		}
+		Arrays.sort(names);
+		int count = 0;
+		for (String name : names) {
+			if (!name.startsWith("file") || !name.endsWith(".n3")) {
+				continue;
+			}
+			byte[] n3 = Files.readAllBytes(new File(rdfData.trim(), name).toPath());
+			if (!isBlank(n3)) {
+				String key = name.substring("file".length(), name.length() - ".n3".length());
+				Model model = ModelFactory.createDefaultModel();
+				try {
+					parse(n3, model);
+				} catch (Exception e) {
+					model = null; //bad syntax, so keep it as it is
+				}
+				if (model != null) {
+					store.write(key, model);
+				} else {
+					store.put(key, n3);
+				}
+				count++;
+			}
+			if (count % 10000 == 0 && count > 0) {
+				logger.info(count + " descriptions imported");
+			}
+		}
+		Date end = new Date();
+		logger.info(count + " descriptions imported from " + rdfData + " in "
+				+ (end.getTime() - start.getTime()) + " total milliseconds");
+		return count;
+	}
+
+	/**
+	 * Re-writes all the descriptions of the store in the format of the store
+	 * (e.g. N3 descriptions into the binary format), with their URIs in their
+	 * canonical form (needed once for the descriptions cached by older versions).
+	 * @param store, the store
+	 * @return the number of converted descriptions
+	 * @throws IOException
+	 */
+	public static int convert(RDFCacheStore store) throws IOException {
+		Date start = new Date();
+		int count = 0;
+		for (String key : store.keys()) {
+			Model model = ModelFactory.createDefaultModel();
+			try {
+				if (store.read(key, model) && !model.isEmpty()) {
+					store.write(key, model);
+					count++;
+				}
+			} catch (Exception e) {
+				logger.info("cannot convert " + key + ": " + e.getMessage()); //bad syntax, so ignore
+			}
+			if (count % 10000 == 0 && count > 0) {
+				logger.info(count + " descriptions converted");
+			}
+		}
+		Date end = new Date();
+		logger.info(count + " descriptions converted in " + (end.getTime() - start.getTime())
+				+ " total milliseconds");
+		return count;
+	}
+}
@@ -0,0 +1,351 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.log4j.Logger;
+
+/**
+ * Fills the RDF cache from N-Triples dumps of the LD sets (possibly gzipped), so that
+ * REDEN can run without network (KBsLocalNoNetwork=true). A dump is streamed line by
+ * line and only the descriptions of the URIs of the dictionary are parsed and written
+ * in the cache. The resources linked to a kept description with the sameAs property are
+ * kept too (in the following lines or dumps), dumps must thus be given base LD set first.
+ * The subjects read are recorded in a compact filter: when sameAs resources may have
+ * been described before their link in the same dump, the dump is read again for them
+ * only (and the number of such resources is logged).
+ * The descriptions of a dump are kept in memory and each one is written once, at the end
+ * of the dump, so the triples of a subject need not be contiguous. When more than
+ * maxBufferedTriples triples are kept, the descriptions are written early and those
+ * found again later in the dump are merged with the cache at the end. A subject described
+ * in several dumps keeps the description of the last one.
+ *
+ * @author Brando & Frontini
+ */
+public class RDFDumpImporter {
+
+	private static Logger logger = Logger.getLogger(RDFDumpImporter.class);
+
+	private final RDFCacheStore store;
+
+	private final Set<String> wanted;
+
+	private final String sameAsProperty;
+
+	private final long maxBufferedTriples;
+
+	/** descriptions of the current dump not written yet, by key */
+	private final Map<String, Model> buffered = new LinkedHashMap<String, Model>();
+
+	private long bufferedTriples = 0;
+
+	/** keys of the current dump written before its end */
+	private final Set<String> flushed = new HashSet<String>();
+
+	/** subjects of the current dump (if sameAs resources are imported) */
+	private SubjectFilter seen;
+
+	/** sameAs resources which may be described before their link in the current dump */
+	private final Set<String> missed = new HashSet<String>();
+
+	private int missedCount = 0;
+
+	/**
+	 * @param store, the RDF cache
+	 * @param wanted, URIs whose descriptions are imported
+	 * @param sameAsProperty, property of the equivalent resources to import too (may be null)
+	 */
+	public RDFDumpImporter(RDFCacheStore store, Set<String> wanted, String sameAsProperty) {
+		this(store, wanted, sameAsProperty, 5000000);
+	}
+
+	/**
+	 * @param store, the RDF cache
+	 * @param wanted, URIs whose descriptions are imported
+	 * @param sameAsProperty, property of the equivalent resources to import too (may be null)
+	 * @param maxBufferedTriples, number of triples kept in memory before the descriptions are written
+	 */
+	public RDFDumpImporter(RDFCacheStore store, Set<String> wanted, String sameAsProperty,
+			long maxBufferedTriples) {
+		this.store = store;
+		this.wanted = wanted;
+		this.sameAsProperty = sameAsProperty;
+		this.maxBufferedTriples = maxBufferedTriples;
+		if (sameAsProperty != null) {
+			seen = new SubjectFilter();
+		}
+	}
+
+	/**
+	 * Reads the URIs of the dictionary files (*.tsv), see DicoProcessingNEL.readDictionaryURIs.
+	 * @param dicoFolders, the dictionary folders separated by commas (nameMainFolderDico)
+	 * @return the URIs
+	 * @throws IOException
+	 */
+	public static Set<String> dictionaryURIs(String dicoFolders) throws IOException {
+		Set<String> uris = new HashSet<String>();
+		DicoProcessingNEL.readDictionaryURIs(dicoFolders, uris::addAll);
+		logger.info(uris.size() + " URIs in the dictionary " + dicoFolders);
+		return uris;
+	}
+
+	/**
+	 * Imports the wanted descriptions of an N-Triples dump (.nt or .nt.gz).
+	 * @param dump, the dump file
+	 * @return the number of descriptions imported
+	 * @throws IOException
+	 */
+	public int importDump(File dump) throws IOException {
+		Date start = new Date();
+		long lines = read(dump, null);
+		while (!missed.isEmpty()) {
+			logger.info(missedCount + " sameAs resources may be described before their link in " + dump
+					+ ", reading it again for them");
+			Set<String> searched = new HashSet<String>(missed);
+			missed.clear();
+			missedCount = 0;
+			int found = buffered.size() + flushed.size();
+			read(dump, searched);
+			logger.info((buffered.size() + flushed.size() - found) + " of them found");
+		}
+		if (seen != null) {
+			seen.clear();
+		}
+		int descriptions = flush(true);
+		Date end = new Date();
+		logger.info(dump + ": " + lines + " lines, " + descriptions + " descriptions imported in "
+				+ (end.getTime() - start.getTime()) + " total milliseconds");
+		return descriptions;
+	}
+
+	/**
+	 * Reads a dump and buffers the wanted descriptions.
+	 * @param dump, the dump file
+	 * @param searched, the sameAs resources to look for again (null on the first reading)
+	 * @return the number of lines
+	 * @throws IOException
+	 */
+	private long read(File dump, Set<String> searched) throws IOException {
+		InputStream in = new FileInputStream(dump);
+		if (dump.getName().endsWith(".gz")) {
+			in = new GZIPInputStream(in, 65536);
+		}
+		BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"), 1 << 20);
+		long lines = 0;
+		String subject = null;
+		Set<String> keys = null;
+		StringBuilder triples = new StringBuilder();
+		try {
+			String s;
+			while ((s = br.readLine()) != null) {
+				lines++;
+				if (lines % 10000000 == 0) {
+					logger.info(lines + " lines of " + dump + " read, " + (buffered.size() + flushed.size())
+							+ " descriptions found");
+				}
+				if (!s.startsWith("<")) { //comment, empty line or blank node subject
+					continue;
+				}
+				int end = s.indexOf('>');
+				if (end < 0) {
+					continue;
+				}
+				String lineSubject = s.substring(1, end);
+				if (!lineSubject.equals(subject)) {
+					if (keys != null) {
+						add(keys, triples);
+					}
+					subject = lineSubject;
+					keys = keysOf(subject);
+					if (searched == null && seen != null) {
+						seen.add(subject);
+						if (subject.indexOf('%') >= 0) {
+							seen.add(Util.decompose(subject));
+						}
+					} else if (searched != null && keys != null && !searched.contains(subject) && !missed.contains(subject)
+							&& !searched.contains(Util.decompose(subject))
+							&& !missed.contains(Util.decompose(subject))) {
+						keys = null; //already read
+					}
+					triples.setLength(0);
+				}
+				if (keys != null) {
+					triples.append(s).append('\n');
+				}
+			}
+			if (keys != null) {
+				add(keys, triples);
+			}
+		} finally {
+			br.close();
+		}
+		return lines;
+	}
+
+	/**
+	 * Cache keys of a subject, as the URI is found in the dictionary or (sameAs
+	 * URIs) decoded.
+	 * @param subject, the URI
+	 * @return the keys or null if the subject is not wanted
+	 */
+	private Set<String> keysOf(String subject) {
+		Set<String> keys = null;
+		if (wanted.contains(subject)) {
+			keys = new LinkedHashSet<String>();
+			keys.add(RDFCacheStore.key(subject));
+		}
+		if (subject.indexOf('%') >= 0) {
+			String decoded = Util.decompose(subject);
+			if (wanted.contains(decoded)) {
+				if (keys == null) {
+					keys = new LinkedHashSet<String>();
+				}
+				keys.add(RDFCacheStore.key(decoded));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Parses the triples of a subject and adds them to its buffered descriptions.
+	 * @param keys, the cache keys of the subject
+	 * @param triples, N-Triples lines
+	 * @throws IOException
+	 */
+	private void add(Set<String> keys, StringBuilder triples) throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		try {
+			RDFDataMgr.read(model, new StringReader(triples.toString()), null, Lang.NTRIPLES);
+		} catch (RiotException e) { //skips the bad lines only
+			model = ModelFactory.createDefaultModel();
+			for (String line : triples.toString().split("\n")) {
+				try {
+					RDFDataMgr.read(model, new StringReader(line), null, Lang.NTRIPLES);
+				} catch (RiotException ignore) {
+					logger.info("skip bad triple: " + line);
+				}
+			}
+		}
+		if (model.isEmpty()) {
+			return;
+		}
+		if (sameAsProperty != null) {
+			NodeIterator it = model.listObjectsOfProperty(model.createProperty(sameAsProperty));
+			while (it.hasNext()) {
+				RDFNode node = it.next();
+				if (node.isURIResource()) {
+					String uri = node.asResource().getURI();
+					String decoded = Util.decompose(uri);
+					boolean added = wanted.add(uri);
+					added |= wanted.add(decoded);
+					if (added && (seen.mightContain(uri) || seen.mightContain(decoded))) {
+						missed.add(uri);
+						missed.add(decoded);
+						missedCount++;
+					}
+				}
+			}
+		}
+		for (String key : keys) {
+			Model description = buffered.get(key);
+			if (description == null) {
+				description = ModelFactory.createDefaultModel();
+				buffered.put(key, description);
+			}
+			long size = description.size();
+			description.add(model);
+			bufferedTriples += description.size() - size;
+		}
+		if (bufferedTriples > maxBufferedTriples) {
+			flush(false);
+		}
+	}
+
+	/**
+	 * Writes the buffered descriptions.
+	 * @param end, whether the dump is read
+	 * @return at the end of the dump, the number of descriptions written for it
+	 * @throws IOException
+	 */
+	private int flush(boolean end) throws IOException {
+		logger.info("write " + buffered.size() + " descriptions (" + bufferedTriples + " triples)");
+		for (Map.Entry<String, Model> e : buffered.entrySet()) {
+			Model description = e.getValue();
+			if (!flushed.add(e.getKey())) { //already written early for this dump
+				store.read(e.getKey(), description);
+			}
+			store.write(e.getKey(), description);
+		}
+		buffered.clear();
+		bufferedTriples = 0;
+		int descriptions = flushed.size();
+		if (end) {
+			flushed.clear();
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Bloom filter of the subjects of a dump (32 MB, 3 bits per URI): a URI which was
+	 * not added is never found, a URI which was not added may be found (about 1 out of
+	 * 1000 for 10 million subjects).
+	 */
+	private static class SubjectFilter {
+
+		private static final int BITS = 1 << 28;
+
+		private final long[] words = new long[BITS / 64];
+
+		private void add(String uri) {
+			long h = hash(uri);
+			for (int i = 0; i < 3; i++) {
+				int bit = (int) (h + i * (h >>> 32)) & (BITS - 1);
+				words[bit >>> 6] |= 1L << bit;
+			}
+		}
+
+		private boolean mightContain(String uri) {
+			long h = hash(uri);
+			for (int i = 0; i < 3; i++) {
+				int bit = (int) (h + i * (h >>> 32)) & (BITS - 1);
+				if ((words[bit >>> 6] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void clear() {
+			Arrays.fill(words, 0L);
+		}
+
+		/** 64-bit FNV-1a hash of the characters */
+		private static long hash(String s) {
+			long h = 0xcbf29ce484222325L;
+			for (int i = 0; i < s.length(); i++) {
+				h = (h ^ s.charAt(i)) * 0x100000001b3L;
+			}
+			return h;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.FileManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Downloads the RDF data of a set of URIs into the local RDF cache (see RDFCacheStore)
+ * with a bounded pool of concurrent requests. The number of concurrent requests and
+ * of requests per second are limited per host, so that the LD sets (data.bnf.fr,
+ * DBpedia, idref...) are not overloaded: the requests wait in a queue per host and are
+ * handed to the pool (after a delay for the rate limit) only when the host is below its
+ * limits, so a busy host never blocks the threads of the pool. URIs that failed recently (see FailureLedger)
+ * are not requested again before their retry time. When a SPARQL endpoint is known
+ * for the LD set of a URI (see SparqlRDFRetriever), the URIs are retrieved by chunks
+ * with CONSTRUCT queries, URIs not found by the endpoint are then dereferenced.
+ *
+ * @author Brando & Frontini
+ */
+public class RDFFetcher {
+
+	private static Logger logger = Logger.getLogger(RDFFetcher.class);
+
+	private final ScheduledExecutorService pool;
+
+	private final int maxPerHost;
+
+	private final long intervalNanos;
+
+	private final FailureLedger ledger;
+
+	private SparqlRDFRetriever sparql = null;
+
+	private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<String, Host>();
+
+	/**
+	 * Requests waiting for a single host.
+	 */
+	private static class Host {
+		private final Queue<Runnable> queue = new ArrayDeque<Runnable>();
+		private int running = 0;
+		private long nextSlot = 0;
+	}
+
+	/**
+	 * @param threads, maximum number of concurrent requests
+	 * @param maxPerHost, maximum number of concurrent requests to the same host
+	 * @param requestsPerSecond, maximum number of requests per second to the same host (0 for no limit)
+	 */
+	public RDFFetcher(int threads, int maxPerHost, double requestsPerSecond) {
+		this(threads, maxPerHost, requestsPerSecond, null);
+	}
+
+	/**
+	 * @param threads, maximum number of concurrent requests
+	 * @param maxPerHost, maximum number of concurrent requests to the same host
+	 * @param requestsPerSecond, maximum number of requests per second to the same host (0 for no limit)
+	 * @param ledger, the failed URIs (null to always retry)
+	 */
+	public RDFFetcher(int threads, int maxPerHost, double requestsPerSecond, FailureLedger ledger) {
+		this.ledger = ledger;
+		this.pool = Executors.newScheduledThreadPool(Math.max(1, threads));
+		this.maxPerHost = Math.max(1, maxPerHost);
+		this.intervalNanos = requestsPerSecond > 0 ? (long) (1000000000L / requestsPerSecond) : 0;
+	}
+
+	/**
+	 * @param sparql, SPARQL endpoints used instead of dereferencing the URIs of their LD sets
+	 */
+	public void setSparqlRetriever(SparqlRDFRetriever sparql) {
+		this.sparql = sparql;
+	}
+
+	/**
+	 * Downloads the RDF data of the given URIs, URIs already in the cache and URIs
+	 * waiting for their retry time are skipped.
+	 * Returns when all the downloads are finished.
+	 * @param uris, the URIs
+	 * @param store, the RDF cache
+	 * @return the number of downloaded URIs
+	 */
+	public int fetchAll(Collection<String> uris, final RDFCacheStore store) {
+		Date start = new Date();
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		Set<String> distinct = new LinkedHashSet<String>(uris);
+		List<String> toDereference = new ArrayList<String>();
+		List<String> toQuery = new ArrayList<String>();
+		int skipped = 0;
+		for (final String uri : distinct) {
+			if (store.contains(RDFCacheStore.key(uri))) {
+				continue;
+			}
+			if (ledger != null && ledger.shouldSkip(uri)) {
+				skipped++;
+				continue;
+			}
+			if (sparql != null && sparql.handles(uri)) {
+				toQuery.add(uri);
+			} else {
+				toDereference.add(uri);
+			}
+		}
+		int missing = toDereference.size() + toQuery.size();
+		int fetched = 0;
+		if (!toQuery.isEmpty()) {
+			fetched = toQuery.size();
+			for (List<String> notFound : queryAll(toQuery, store)) {
+				fetched -= notFound.size();
+				toDereference.addAll(notFound);
+			}
+		}
+		for (final String uri : toDereference) {
+			futures.add(submit(uri, new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return fetch(uri, store, ledger);
+				}
+			}));
+		}
+		for (Future<Boolean> future : futures) {
+			try {
+				if (future.get()) {
+					fetched++;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+		if (missing > 0) {
+			Date end = new Date();
+			logger.info("fetched " + fetched + " of " + missing + " missing URIs ("
+					+ distinct.size() + " requested) in " + (end.getTime() - start.getTime())
+					+ " total milliseconds");
+		}
+		if (skipped > 0) {
+			logger.info(skipped + " URIs skipped, failed recently");
+		}
+		if (ledger != null) {
+			ledger.save();
+		}
+		return fetched;
+	}
+
+	/**
+	 * Retrieves URIs with SPARQL queries, a chunk per request (a chunk whose
+	 * query fails is dereferenced).
+	 * @param uris, URIs handled by the SPARQL retriever
+	 * @param store, the RDF cache
+	 * @return per chunk, the URIs not found by the endpoint
+	 */
+	private List<List<String>> queryAll(List<String> uris, final RDFCacheStore store) {
+		List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+		final List<List<String>> chunks = sparql.chunks(uris);
+		for (final List<String> chunk : chunks) {
+			futures.add(submit(sparql.endpointOf(chunk.get(0)), new Callable<List<String>>() {
+				public List<String> call() throws Exception {
+					return sparql.retrieve(chunk, store, ledger);
+				}
+			}));
+		}
+		List<List<String>> notFound = new ArrayList<List<String>>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				notFound.add(futures.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				logger.info("problem with SPARQL query, URIs dereferenced: " + e.getCause());
+				notFound.add(chunks.get(i));
+			}
+		}
+		return notFound;
+	}
+
+	/**
+	 * Stops the pool, to be called at the end of the run.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+		try {
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Host host(String uri) {
+		String name = hostOf(uri);
+		Host host = hosts.get(name);
+		if (host == null) {
+			Host newHost = new Host();
+			host = hosts.putIfAbsent(name, newHost);
+			if (host == null) {
+				host = newHost;
+			}
+		}
+		return host;
+	}
+
+	/**
+	 * Queues a request to the host of a URI.
+	 * @param uri, the URI (or name of the endpoint)
+	 * @param request, the request
+	 * @return the result of the request
+	 */
+	private <T> Future<T> submit(String uri, Callable<T> request) {
+		final Host host = host(uri);
+		final FutureTask<T> task = new FutureTask<T>(request);
+		synchronized (host) {
+			host.queue.add(new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} finally {
+						synchronized (host) {
+							host.running--;
+						}
+						dispatch(host);
+					}
+				}
+			});
+		}
+		dispatch(host);
+		return task;
+	}
+
+	/**
+	 * Hands the waiting requests of a host to the pool, up to maxPerHost running
+	 * requests, each one delayed until its slot of the rate limit.
+	 * @param host, the host
+	 */
+	private void dispatch(Host host) {
+		synchronized (host) {
+			while (host.running < maxPerHost && !host.queue.isEmpty()) {
+				Runnable request = host.queue.poll();
+				host.running++;
+				long now = System.nanoTime();
+				long slot = Math.max(now, host.nextSlot);
+				if (intervalNanos > 0) {
+					host.nextSlot = slot + intervalNanos;
+				}
+				pool.schedule(request, slot - now, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Host part of a URI (the whole URI if it has none).
+	 * @param uri, the URI
+	 * @return the host
+	 */
+	static String hostOf(String uri) {
+		int start = uri.indexOf("://");
+		if (start < 0) {
+			return uri;
+		}
+		start += 3;
+		int end = uri.indexOf('/', start);
+		return (end < 0 ? uri.substring(start) : uri.substring(start, end)).toLowerCase();
+	}
+
+	/**
+	 * Downloads the RDF data of a URI into the cache (to go faster, cached
+	 * descriptions are not updated).
+	 * @param uri, the URI
+	 * @param store, the RDF cache
+	 * @return true if the data was downloaded
+	 */
+	public static boolean fetch(String uri, RDFCacheStore store) {
+		return fetch(uri, store, null);
+	}
+
+	/**
+	 * Downloads the RDF data of a URI into the cache, the result is recorded in the
+	 * ledger (a description without any triple is a failure).
+	 * @param uri, the URI
+	 * @param store, the RDF cache
+	 * @param ledger, the failed URIs (may be null)
+	 * @return true if the data was downloaded
+	 */
+	public static boolean fetch(String uri, RDFCacheStore store, FailureLedger ledger) {
+		String key = RDFCacheStore.key(uri);
+		try {
+			if (store.contains(key)) {
+				return false;
+			}
+			Model model = ModelFactory.createDefaultModel();
+			if (uri.contains("dbpedia")) {
+				InputStream in = FileManager.get().open(uri+".ntriples"); //TODO can be generic, to test
+				if (in != null) {
+					model.read(in, null, "N3");
+					in.close();
+				} else {
+					logger.info("skip URI: " + uri);
+					if (ledger != null) {
+						ledger.recordFailure(uri, "NotFound");
+					}
+					return false;
+				}
+			} else {
+				model.read(uri);
+			}
+
+			store.write(key, model);
+			logger.info("downloaded from uri: " + uri + " and key " + key);
+			if (ledger != null) {
+				if (model.isEmpty()) {
+					ledger.recordFailure(uri, "Empty");
+				} else {
+					ledger.recordSuccess(uri);
+				}
+			}
+			return true;
+		} catch (Exception e) {
+			logger.info("problem with URI (not found or bad syntax): " + uri); //not found or bad syntax, etc. so ignore
+			if (ledger != null) {
+				ledger.recordFailure(uri, e.getClass().getSimpleName());
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory cache of the parsed RDF descriptions of a cache store, so that the
+ * description of a resource is parsed once per document (or once per run) instead
+ * of once per paragraph. The cache is an LRU bounded by a number of triples.
+ * Models created by createModel are views over the cached descriptions
+ * (a union graph indexed by subject, so that listing the statements of a resource
+ * only visits the descriptions having it as subject), the descriptions are never
+ * copied nor modified. Descriptions streamed from the store are kept as well.
+ *
+ * @author Brando & Frontini
+ */
+public class RDFModelCache extends RDFCacheStore {
+
+	private static Logger logger = Logger.getLogger(RDFModelCache.class);
+
+	private final RDFCacheStore store;
+
+	private final long maxTriples;
+
+	private long triples = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	private final LinkedHashMap<String, Description> graphs = new LinkedHashMap<String, Description>(16, 0.75f,
+			true);
+
+	/**
+	 * A cached description and its subjects.
+	 */
+	private static class Description {
+
+		private final Graph graph;
+
+		private final Set<Node> subjects;
+
+		private Description(Graph graph) {
+			this.graph = graph;
+			this.subjects = GraphUtil.listSubjects(graph, Node.ANY, Node.ANY).toSet();
+		}
+	}
+
+	/**
+	 * Union of the descriptions read into a model, indexed by subject. Statements
+	 * added to the model go to a base graph of its own.
+	 */
+	private static class DescriptionUnion extends GraphBase {
+
+		private final Graph base = GraphFactory.createDefaultGraph();
+
+		private final List<Graph> all = new ArrayList<Graph>();
+
+		private final Map<Node, List<Graph>> bySubject = new HashMap<Node, List<Graph>>();
+
+		private DescriptionUnion() {
+			all.add(base);
+		}
+
+		private void addDescription(Description description) {
+			if (all.contains(description.graph)) {
+				return;
+			}
+			all.add(description.graph);
+			for (Node subject : description.subjects) {
+				List<Graph> list = bySubject.get(subject);
+				if (list == null) {
+					list = new ArrayList<Graph>(1);
+					bySubject.put(subject, list);
+				}
+				list.add(description.graph);
+			}
+		}
+
+		@Override
+		protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+			List<Graph> graphs = all;
+			if (pattern.getSubject().isConcrete()) {
+				List<Graph> described = bySubject.get(pattern.getSubject());
+				if (described == null) {
+					return base.find(pattern);
+				}
+				graphs = new ArrayList<Graph>(described.size() + 1);
+				graphs.add(base);
+				graphs.addAll(described);
+			}
+			if (graphs.size() == 1) {
+				return graphs.get(0).find(pattern);
+			}
+			// a triple may be in several descriptions, it is listed once
+			Set<Triple> seen = new HashSet<Triple>();
+			ExtendedIterator<Triple> result = NullIterator.instance();
+			for (Graph graph : graphs) {
+				result = result.andThen(graph.find(pattern).filterKeep(seen::add));
+			}
+			return result;
+		}
+
+		@Override
+		public void performAdd(Triple t) {
+			base.add(t);
+		}
+
+		@Override
+		public void performDelete(Triple t) {
+			base.delete(t);
+		}
+	}
+
+	/**
+	 * Sends the triples to a sink and copies them to a graph, until the graph exceeds
+	 * the size of the cache.
+	 */
+	private class TeeSink extends StreamRDFWrapper {
+
+		private Graph graph = GraphFactory.createDefaultGraph();
+
+		private TeeSink(StreamRDF sink) {
+			super(sink);
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			if (graph != null) {
+				graph.add(triple);
+				if (graph.size() > maxTriples) {
+					graph = null;
+				}
+			}
+			super.triple(triple);
+		}
+	}
+
+	/**
+	 * @param store, the underlying cache store
+	 * @param maxTriples, maximum number of triples kept in memory
+	 */
+	public RDFModelCache(RDFCacheStore store, long maxTriples) {
+		this.store = store;
+		this.maxTriples = maxTriples;
+	}
+
+	/**
+	 * A model whose descriptions are loaded as views (see read), statements added
+	 * to the model itself do not change the cached descriptions.
+	 */
+	@Override
+	public Model createModel() {
+		return ModelFactory.createModelForGraph(new DescriptionUnion());
+	}
+
+	@Override
+	public synchronized boolean contains(String key) {
+		return graphs.containsKey(key) || store.contains(key);
+	}
+
+	/**
+	 * Adds the cached description to the model (parsed from the store the first time).
+	 */
+	@Override
+	public synchronized boolean read(String key, Model model) {
+		Description description = graphs.get(key);
+		if (description != null) {
+			hits++;
+		} else {
+			misses++;
+			Model parsed = ModelFactory.createDefaultModel();
+			if (!store.read(key, parsed)) {
+				return false;
+			}
+			description = new Description(parsed.getGraph());
+			cache(key, description);
+		}
+		if (model.getGraph() instanceof DescriptionUnion) {
+			((DescriptionUnion) model.getGraph()).addDescription(description);
+		} else {
+			model.add(ModelFactory.createModelForGraph(description.graph));
+		}
+		return true;
+	}
+
+	/**
+	 * Sends the cached description to the stream, a description not in memory is
+	 * streamed from the store and kept.
+	 */
+	@Override
+	public boolean stream(String key, StreamRDF sink) {
+		Description description;
+		synchronized (this) {
+			description = graphs.get(key);
+			if (description != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+		if (description == null) {
+			TeeSink tee = new TeeSink(sink);
+			if (!store.stream(key, tee)) {
+				return false;
+			}
+			if (tee.graph != null) {
+				synchronized (this) {
+					cache(key, new Description(tee.graph));
+				}
+			}
+			return true;
+		}
+		StreamOps.sendTriplesToStream(description.graph, sink);
+		return true;
+	}
+
+	private void cache(String key, Description description) {
+		long size = description.graph.size();
+		if (size > maxTriples) {
+			return;
+		}
+		Description previous = graphs.put(key, description);
+		if (previous != null) {
+			triples -= previous.graph.size();
+		}
+		triples += size;
+		Iterator<Map.Entry<String, Description>> it = graphs.entrySet().iterator();
+		while (triples > maxTriples && it.hasNext()) {
+			triples -= it.next().getValue().graph.size();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private synchronized void invalidate(String key) {
+		Description description = graphs.remove(key);
+		if (description != null) {
+			triples -= description.graph.size();
+		}
+	}
+
+	@Override
+	public void put(String key, byte[] data) throws IOException {
+		store.put(key, data);
+		invalidate(key);
+	}
+
+	@Override
+	public Collection<String> keys() {
+		return store.keys();
+	}
+
+	@Override
+	public void write(String key, Model model) throws IOException {
+		store.write(key, model);
+		invalidate(key);
+	}
+
+	/**
+	 * Empties the cache (e.g. at the end of a document).
+	 */
+	public synchronized void clear() {
+		graphs.clear();
+		triples = 0;
+	}
+
+	/**
+	 * Logs the counters of the cache.
+	 */
+	public synchronized void logStatistics() {
+		long total = hits + misses;
+		logger.info("RDF model cache: " + graphs.size() + " descriptions, " + triples + "/" + maxTriples
+				+ " triples, " + hits + " hits, " + misses + " parses, " + evictions + " evictions"
+				+ (total > 0 ? " (hit ratio " + (100 * hits / total) + "%)" : ""));
+	}
+
+	@Override
+	public void close() {
+		logStatistics();
+		store.close();
+	}
+}
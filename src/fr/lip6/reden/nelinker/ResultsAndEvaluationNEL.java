@@ -66,7 +66,7 @@ public class ResultsAndEvaluationNEL {
 	 */
 	public static void produceResults(File fileName, String annotationTag,
 			Map<String, String> choosenUris,
-			Map<String, List<List<String>>> mentionsWithURIs, Element e,
+			Map<String, CandidateSet> mentionsWithURIs, Element e,
 			org.w3c.dom.Document doc, String outDir, String propertyTagRef, 
 			Map<String, Double> choosenScoresperMention, String addScores) {
 
@@ -136,7 +136,7 @@ public class ResultsAndEvaluationNEL {
 	 * @param doc, xml document
 	 */
 	public static void produceResultsSimple(File fileName, String annotationTag,
-			Map<String, List<List<String>>> mentionsWithURIs, Element e,
+			Map<String, CandidateSet> mentionsWithURIs, Element e,
 			org.w3c.dom.Document doc, String outDir, String propertyTagRef) {
 
 		List<List<String>> out = new ArrayList<List<String>>();
@@ -151,7 +151,7 @@ public class ResultsAndEvaluationNEL {
 				annotationsParagraph.add(child.getTextContent());
 				String finUri = "";
 				if (mentionsWithURIs.get(child.getTextContent()) != null) {
-					for (String uri : mentionsWithURIs.get(child.getTextContent()).get(0)) {
+					for (String uri : mentionsWithURIs.get(child.getTextContent()).first()) {
 						finUri += uri + " ";
 					}
 					child.setAttribute(propertyTagRef, finUri.trim());
@@ -199,7 +199,7 @@ public class ResultsAndEvaluationNEL {
 	 *            , name of the annotation tag (e.g. : <persName>)
 	 */
 	public static List<EvalInfo> compareResultsWithGold(String namefile, String annotationTag, String xpathExpresion, String outDir, String propertyTagRef, 
-			List<Map<String, List<List<String>>>> allMentionsWithUrisPerContextinText) {
+			List<Map<String, CandidateSet>> allMentionsWithUrisPerContextinText) {
 		
 		List<EvalInfo> collectedResults = new ArrayList<EvalInfo>();
 		
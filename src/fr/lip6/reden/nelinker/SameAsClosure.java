@@ -0,0 +1,340 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * Equivalence classes of the URIs linked by the sameAs property in the RDF cache (and
+ * of the URIs on the same line of the dictionary), including transitive links. The
+ * classes are computed once (union-find, see build) and stored in a file read through
+ * a memory mapping (sameAsClosureFile), the equivalents of a URI are then found with a
+ * single hash table lookup. URIs are stored decoded (see Util.decompose).
+ *
+ * File layout: header, hash table (URI numbers), URI entries (string position, class),
+ * classes (first member of every class, members) and URI strings.
+ *
+ * @author Brando & Frontini
+ */
+public class SameAsClosure {
+
+	private static Logger logger = Logger.getLogger(SameAsClosure.class);
+
+	private static final byte[] MAGIC = "REDENSA1".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int HEADER = MAGIC.length + 6 * 4;
+
+	private final MappedByteBuffer buffer;
+
+	private final int tableSize;
+
+	private final int uriCount;
+
+	private final int classCount;
+
+	private final int entriesPos;
+
+	private final int classesPos;
+
+	private SameAsClosure(MappedByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (buffer.get(i) != MAGIC[i]) {
+				throw new IOException("not a sameAs closure file");
+			}
+		}
+		int pos = MAGIC.length;
+		tableSize = buffer.getInt(pos);
+		uriCount = buffer.getInt(pos + 4);
+		classCount = buffer.getInt(pos + 8);
+		entriesPos = buffer.getInt(pos + 12);
+		classesPos = buffer.getInt(pos + 16);
+	}
+
+	/**
+	 * Maps a closure file.
+	 * @param file, the file written by build
+	 * @return the closure
+	 * @throws IOException
+	 */
+	public static SameAsClosure open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			SameAsClosure closure = new SameAsClosure(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			logger.info("sameAs closure " + file + " opened: " + closure.uriCount + " URIs, "
+					+ closure.classCount + " classes");
+			return closure;
+		} finally {
+			channel.close(); //the mapping stays valid
+		}
+	}
+
+	private static int hash(String uri) {
+		int h = uri.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Number of a URI in the file.
+	 * @param uri, the decoded URI
+	 * @return the number or -1 if the URI is unknown
+	 */
+	private int find(String uri) {
+		byte[] bytes = uri.getBytes(StandardCharsets.UTF_8);
+		int mask = tableSize - 1;
+		for (int slot = hash(uri) & mask;; slot = (slot + 1) & mask) {
+			int n = buffer.getInt(HEADER + 4 * slot) - 1;
+			if (n < 0) {
+				return -1;
+			}
+			int stringPos = buffer.getInt(entriesPos + 8 * n);
+			if (buffer.getInt(stringPos) == bytes.length && equals(stringPos + 4, bytes)) {
+				return n;
+			}
+		}
+	}
+
+	private boolean equals(int pos, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (buffer.get(pos + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String uri(int n) {
+		int stringPos = buffer.getInt(entriesPos + 8 * n);
+		byte[] bytes = new byte[buffer.getInt(stringPos)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(stringPos + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Whether the URI was known when the closure was built.
+	 * @param uri, the URI
+	 * @return true if known
+	 */
+	public boolean contains(String uri) {
+		return find(Util.decompose(uri)) >= 0;
+	}
+
+	/**
+	 * All the URIs equivalent to the given one, directly or transitively.
+	 * @param uri, the URI
+	 * @return the decoded equivalent URIs (without the URI itself), empty if the URI is unknown
+	 */
+	public List<String> equivalents(String uri) {
+		List<String> equivalents = new ArrayList<String>();
+		int n = find(Util.decompose(uri));
+		if (n < 0) {
+			return equivalents;
+		}
+		int classId = buffer.getInt(entriesPos + 8 * n + 4);
+		int start = buffer.getInt(classesPos + 4 * classId);
+		int end = buffer.getInt(classesPos + 4 * (classId + 1));
+		int membersPos = classesPos + 4 * (classCount + 1);
+		for (int i = start; i < end; i++) {
+			int member = buffer.getInt(membersPos + 4 * i);
+			if (member != n) {
+				equivalents.add(uri(member));
+			}
+		}
+		return equivalents;
+	}
+
+	/**
+	 * Union-find of the URIs, used to build the file.
+	 */
+	private static class UnionFind {
+		private final Map<String, Integer> ids = new HashMap<String, Integer>();
+		private final List<String> uris = new ArrayList<String>();
+		private int[] parent = new int[1024];
+
+		private int id(String uri) {
+			Integer id = ids.get(uri);
+			if (id == null) {
+				id = uris.size();
+				ids.put(uri, id);
+				uris.add(uri);
+				if (id == parent.length) {
+					parent = Arrays.copyOf(parent, parent.length * 2);
+				}
+				parent[id] = id;
+			}
+			return id;
+		}
+
+		private int root(int id) {
+			while (parent[id] != id) {
+				parent[id] = parent[parent[id]]; //path halving
+				id = parent[id];
+			}
+			return id;
+		}
+
+		private void union(String uri1, String uri2) {
+			int root1 = root(id(uri1));
+			int root2 = root(id(uri2));
+			if (root1 != root2) {
+				parent[Math.max(root1, root2)] = Math.min(root1, root2);
+			}
+		}
+	}
+
+	/**
+	 * Builds the closure of the sameAs links of the RDF cache and of the URIs
+	 * of the dictionary lines.
+	 * @param store, the RDF cache
+	 * @param sameAsProperty, the equivalence property
+	 * @param dicoFolders, the dictionary folders separated by commas (may be null)
+	 * @param file, the closure file to write
+	 * @throws IOException
+	 */
+	public static void build(RDFCacheStore store, String sameAsProperty, String dicoFolders, File file)
+			throws IOException {
+		Date start = new Date();
+		UnionFind uf = new UnionFind();
+		int descriptions = 0;
+		for (String key : store.keys()) {
+			Model model = ModelFactory.createDefaultModel();
+			try {
+				if (!store.read(key, model)) {
+					continue;
+				}
+			} catch (Exception e) {
+				logger.info("skip bad RDF data: " + key);
+				continue;
+			}
+			Property prop = model.createProperty(sameAsProperty);
+			StmtIterator it = model.listStatements(null, prop, (RDFNode) null);
+			while (it.hasNext()) {
+				Statement stmt = it.next();
+				if (stmt.getSubject().isURIResource() && stmt.getObject().isURIResource()) {
+					uf.union(Util.decompose(stmt.getSubject().getURI()),
+							Util.decompose(stmt.getObject().asResource().getURI()));
+				}
+			}
+			if (++descriptions % 100000 == 0) {
+				logger.info(descriptions + " RDF descriptions read");
+			}
+		}
+		if (dicoFolders != null) {
+			DicoProcessingNEL.readDictionaryURIs(dicoFolders, uris -> {
+				String first = Util.decompose(uris.get(0));
+				uf.id(first);
+				for (int k = 1; k < uris.size(); k++) {
+					uf.union(first, Util.decompose(uris.get(k)));
+				}
+			});
+		}
+		write(uf, file);
+		Date end = new Date();
+		logger.info("sameAs closure of " + descriptions + " RDF descriptions (" + uf.uris.size()
+				+ " URIs) written in " + file + " in " + (end.getTime() - start.getTime()) + " total milliseconds");
+	}
+
+	private static void write(UnionFind uf, File file) throws IOException {
+		int uriCount = uf.uris.size();
+		// classes, numbered in the order of their first URI
+		int[] classOf = new int[uriCount];
+		int[] classOfRoot = new int[uriCount];
+		Arrays.fill(classOfRoot, -1);
+		int classCount = 0;
+		for (int i = 0; i < uriCount; i++) {
+			int root = uf.root(i);
+			if (classOfRoot[root] < 0) {
+				classOfRoot[root] = classCount++;
+			}
+			classOf[i] = classOfRoot[root];
+		}
+		int[] classStart = new int[classCount + 1];
+		for (int i = 0; i < uriCount; i++) {
+			classStart[classOf[i] + 1]++;
+		}
+		for (int c = 0; c < classCount; c++) {
+			classStart[c + 1] += classStart[c];
+		}
+		int[] members = new int[uriCount];
+		int[] next = Arrays.copyOf(classStart, classCount);
+		for (int i = 0; i < uriCount; i++) {
+			members[next[classOf[i]]++] = i;
+		}
+		// hash table
+		int tableSize = Integer.highestOneBit(Math.max(2, uriCount * 2 - 1)) << 1;
+		int[] table = new int[tableSize];
+		for (int i = 0; i < uriCount; i++) {
+			int slot = hash(uf.uris.get(i)) & (tableSize - 1);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (tableSize - 1);
+			}
+			table[slot] = i + 1;
+		}
+		long entriesPos = HEADER + 4L * tableSize;
+		long classesPos = entriesPos + 8L * uriCount;
+		long stringsPos = classesPos + 4L * (classCount + 1) + 4L * uriCount;
+		byte[][] strings = new byte[uriCount][];
+		long size = stringsPos;
+		for (int i = 0; i < uriCount; i++) {
+			strings[i] = uf.uris.get(i).getBytes(StandardCharsets.UTF_8);
+			size += 4 + strings[i].length;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("sameAs closure too large (" + size + " bytes)");
+		}
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmp.toPath()), 1 << 16));
+		out.write(MAGIC);
+		out.writeInt(tableSize);
+		out.writeInt(uriCount);
+		out.writeInt(classCount);
+		out.writeInt((int) entriesPos);
+		out.writeInt((int) classesPos);
+		out.writeInt((int) stringsPos);
+		for (int slot : table) {
+			out.writeInt(slot);
+		}
+		long stringPos = stringsPos;
+		for (int i = 0; i < uriCount; i++) {
+			out.writeInt((int) stringPos);
+			out.writeInt(classOf[i]);
+			stringPos += 4 + strings[i].length;
+		}
+		for (int start : classStart) {
+			out.writeInt(start);
+		}
+		for (int member : members) {
+			out.writeInt(member);
+		}
+		for (byte[] s : strings) {
+			out.writeInt(s.length);
+			out.write(s);
+		}
+		out.close();
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
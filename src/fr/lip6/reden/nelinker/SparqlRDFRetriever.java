@@ -0,0 +1,201 @@
+package fr.lip6.reden.nelinker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.log4j.Logger;
+
+/**
+ * Retrieves the RDF descriptions of many URIs with a few SPARQL CONSTRUCT queries
+ * instead of dereferencing every URI (see RDFFetcher). The URIs of a LD set are sent
+ * by chunks (VALUES clause) to the SPARQL endpoint of the LD set, the resulting graph
+ * is split by subject and every description is written in the RDF cache.
+ * An endpoint is either the URL of a SPARQL service or a local RDF file (queried in memory).
+ *
+ * @author Brando & Frontini
+ */
+public class SparqlRDFRetriever {
+
+	private static Logger logger = Logger.getLogger(SparqlRDFRetriever.class);
+
+	private final int chunkSize;
+
+	/** host of the URIs to SPARQL service URL */
+	private final Map<String, String> services = new LinkedHashMap<String, String>();
+
+	/** host of the URIs to local dataset */
+	private final Map<String, Dataset> datasets = new LinkedHashMap<String, Dataset>();
+
+	/**
+	 * @param chunkSize, maximum number of URIs per query
+	 */
+	public SparqlRDFRetriever(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Reads the endpoints of a parameter with the format
+	 * "host endpoint, host endpoint...", e.g.
+	 * "data.bnf.fr http://data.bnf.fr/sparql".
+	 * @param endpoints, the parameter value
+	 * @param chunkSize, maximum number of URIs per query
+	 * @return the retriever, null if no endpoint is given
+	 */
+	public static SparqlRDFRetriever parse(String endpoints, int chunkSize) {
+		if (endpoints == null || endpoints.trim().isEmpty()) {
+			return null;
+		}
+		SparqlRDFRetriever retriever = new SparqlRDFRetriever(chunkSize);
+		for (String endpoint : endpoints.split(",")) {
+			String[] li = endpoint.trim().split("\\s+");
+			if (li.length != 2) {
+				throw new IllegalArgumentException("bad SPARQL endpoint (host endpoint expected): " + endpoint);
+			}
+			retriever.addEndpoint(li[0], li[1]);
+		}
+		return retriever;
+	}
+
+	/**
+	 * @param host, host of the URIs (e.g. data.bnf.fr)
+	 * @param endpoint, URL of the SPARQL service or path of a local RDF file
+	 */
+	public void addEndpoint(String host, String endpoint) {
+		if (endpoint.startsWith("http://") || endpoint.startsWith("https://")) {
+			services.put(host.toLowerCase(), endpoint);
+		} else {
+			logger.info("loading local SPARQL dataset " + endpoint);
+			addDataset(host, RDFDataMgr.loadDataset(endpoint));
+		}
+	}
+
+	/**
+	 * @param host, host of the URIs (e.g. data.bnf.fr)
+	 * @param dataset, dataset queried in memory
+	 */
+	public void addDataset(String host, Dataset dataset) {
+		datasets.put(host.toLowerCase(), dataset);
+	}
+
+	/**
+	 * Whether the URI can be retrieved with SPARQL (known host and valid IRI).
+	 * @param uri, the URI
+	 * @return true if a SPARQL endpoint is known for the URI
+	 */
+	public boolean handles(String uri) {
+		String host = RDFFetcher.hostOf(uri);
+		if (!services.containsKey(host) && !datasets.containsKey(host)) {
+			return false;
+		}
+		for (int i = 0; i < uri.length(); i++) {
+			char c = uri.charAt(i);
+			if (c <= ' ' || "<>\"{}|^`\\".indexOf(c) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Name used to limit the concurrent queries (host of the service, or the
+	 * local dataset).
+	 * @param uri, a URI handled by this retriever
+	 * @return the name of the endpoint
+	 */
+	public String endpointOf(String uri) {
+		String host = RDFFetcher.hostOf(uri);
+		String service = services.get(host);
+		return service != null ? RDFFetcher.hostOf(service) : "local:" + host;
+	}
+
+	/**
+	 * Groups URIs handled by this retriever into chunks of URIs of the same host.
+	 * @param uris, the URIs
+	 * @return the chunks
+	 */
+	public List<List<String>> chunks(Collection<String> uris) {
+		Map<String, List<String>> perHost = new LinkedHashMap<String, List<String>>();
+		List<List<String>> chunks = new ArrayList<List<String>>();
+		for (String uri : uris) {
+			String host = RDFFetcher.hostOf(uri);
+			List<String> chunk = perHost.get(host);
+			if (chunk == null) {
+				chunk = new ArrayList<String>();
+				perHost.put(host, chunk);
+				chunks.add(chunk);
+			}
+			chunk.add(uri);
+			if (chunk.size() == chunkSize) {
+				perHost.remove(host);
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * CONSTRUCT query of the outgoing triples of the URIs.
+	 * @param uris, the URIs
+	 * @return the query
+	 */
+	static String constructQuery(Collection<String> uris) {
+		StringBuilder query = new StringBuilder("CONSTRUCT { ?s ?p ?o } WHERE { VALUES ?s {");
+		for (String uri : uris) {
+			query.append(" <").append(uri).append('>');
+		}
+		return query.append(" } ?s ?p ?o }").toString();
+	}
+
+	/**
+	 * Retrieves the descriptions of a chunk of URIs of the same host and writes
+	 * them in the cache.
+	 * @param chunk, the URIs
+	 * @param store, the RDF cache
+	 * @param ledger, the failed URIs (may be null)
+	 * @return the URIs without any triple in the endpoint
+	 * @throws IOException if a description cannot be written
+	 */
+	public List<String> retrieve(List<String> chunk, RDFCacheStore store, FailureLedger ledger) throws IOException {
+		String host = RDFFetcher.hostOf(chunk.get(0));
+		String service = services.get(host);
+		QueryExecution qexec = service != null
+				? QueryExecutionFactory.sparqlService(service, QueryFactory.create(constructQuery(chunk)))
+				: QueryExecutionFactory.create(QueryFactory.create(constructQuery(chunk)), datasets.get(host));
+		Model result;
+		try {
+			result = qexec.execConstruct();
+		} finally {
+			qexec.close();
+		}
+		List<String> missing = new ArrayList<String>();
+		for (String uri : chunk) {
+			Resource subject = result.createResource(uri);
+			if (!result.contains(subject, null, (RDFNode) null)) {
+				missing.add(uri);
+				continue;
+			}
+			Model description = ModelFactory.createDefaultModel();
+			description.setNsPrefixes(result.getNsPrefixMap());
+			description.add(result.listStatements(subject, null, (RDFNode) null));
+			store.write(RDFCacheStore.key(uri), description);
+			if (ledger != null) {
+				ledger.recordSuccess(uri);
+			}
+		}
+		logger.info("SPARQL query of " + chunk.size() + " URIs of " + host + ": "
+				+ (chunk.size() - missing.size()) + " descriptions, " + result.size() + " triples");
+		return missing;
+	}
+}
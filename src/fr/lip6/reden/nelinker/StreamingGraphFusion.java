@@ -0,0 +1,268 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.log4j.Logger;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+/**
+ * Graph fusion without any Jena model (fusionBackend=stream): the cached descriptions
+ * are parsed as streams of triples (see RDFCacheStore.stream), the sameAs links of the
+ * base resources are recorded while streaming their descriptions and the triples of the
+ * equivalent resources are turned directly into weighted edges of the graph (triples of
+ * the predicates dropped by the predicate profile are skipped while parsing). This
+ * replaces loadBaseRDFModel, retrieveAndLoadSameAsRDFData and fuseRDFGraphsIntoJGTGraph
+ * of GraphHandlerNEL, with the same result, except that the triples of a resource are
+ * only looked for in its own description (under the canonical form of its URI, see
+ * CanonicalURIs).
+ *
+ * @author Brando & Frontini
+ */
+public class StreamingGraphFusion {
+
+	private static Logger logger = Logger.getLogger(StreamingGraphFusion.class);
+
+	private static final int[] NO_PAIRS = new int[0];
+
+	/**
+	 * Collects the objects of the sameAs links of a resource.
+	 */
+	private static class SameAsSink extends StreamRDFBase {
+		private final String subject;
+		private final String sameAsProperty;
+		private final List<String> objects = new ArrayList<String>();
+
+		private SameAsSink(String subject, String sameAsProperty) {
+			this.subject = subject;
+			this.sameAsProperty = sameAsProperty;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			if (triple.getSubject().isURI() && triple.getSubject().getURI().equals(subject)
+					&& triple.getPredicate().getURI().equals(sameAsProperty)) {
+				objects.add(SubjectTripleIndex.termOf(triple.getObject()));
+			}
+		}
+	}
+
+	/**
+	 * Collects the (predicate, object) pairs of a resource (sameAs links excepted).
+	 */
+	private static class PairSink extends StreamRDFBase {
+		private final String subject;
+		private final int sameAsId;
+		private final PredicateProfile profile;
+		private final UriRegistry registry;
+		private int[] pairs = new int[64];
+		private int size = 0;
+
+		private PairSink(String subject, int sameAsId, PredicateProfile profile, UriRegistry registry) {
+			this.subject = subject;
+			this.sameAsId = sameAsId;
+			this.profile = profile;
+			this.registry = registry;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			if (!triple.getSubject().isURI() || !triple.getSubject().getURI().equals(subject)) {
+				return;
+			}
+			int predicate = registry.id(triple.getPredicate().getURI());
+			if (predicate == sameAsId || !profile.keeps(predicate, registry)) { // other predicates != than sameAs
+				return;
+			}
+			if (size + 2 > pairs.length) {
+				pairs = Arrays.copyOf(pairs, pairs.length * 2);
+			}
+			pairs[size++] = predicate;
+			pairs[size++] = registry.id(SubjectTripleIndex.termOf(triple.getObject()));
+		}
+
+		private int[] pairs() {
+			return Arrays.copyOf(pairs, size);
+		}
+	}
+
+	/**
+	 * Builds the graph of a paragraph from the RDF cache. The base RDF data must be
+	 * in the cache (see GraphHandlerNEL.retrieveBaseRDFData), the RDF data of the
+	 * equivalent resources is downloaded if the network is available.
+	 * @param rdfCache
+	 * @param mentionsWithURIs
+	 * @param baseURL
+	 * @param crawlSameAs
+	 * @param sameAsProperty
+	 * @param profile, the weights of the predicates (and the dropped predicates)
+	 * @param kBsLocalNoNetwork
+	 * @param registry
+	 * @param fetcher
+	 * @param closure, the sameAs closure (may be null)
+	 * @return the graph, vertices are the registry IDs of the decoded URIs (or literals)
+	 */
+	@SuppressWarnings("rawtypes")
+	public static SimpleDirectedWeightedGraph<Integer, LabeledEdge> fuse(RDFCacheStore rdfCache,
+			Map<String, CandidateSet> mentionsWithURIs, String baseURL, String crawlSameAs,
+			String sameAsProperty, PredicateProfile profile, String kBsLocalNoNetwork, UriRegistry registry,
+			RDFFetcher fetcher, SameAsClosure closure) {
+		baseURL = baseURL.trim();
+		boolean all = crawlSameAs.equalsIgnoreCase("ALL");
+
+		// 1) equivalent resources of the base resources (closure or sameAs links of their descriptions)
+		Map<String, List<String>> sameAsLinks = new HashMap<String, List<String>>();
+		Set<String> toFetch = new LinkedHashSet<String>();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
+			for (List<String> uriList : uriLists) {
+				for (String uri : uriList) {
+					if (uri.contains(baseURL)) {
+						List<String> objects = sameAsLinks.get(uri);
+						if (objects == null) {
+							objects = sameAsLinksOf(uri, rdfCache, sameAsProperty, registry, closure);
+							sameAsLinks.put(uri, objects);
+						}
+						for (String object : objects) {
+							if (all || object.startsWith(crawlSameAs)) {
+								toFetch.add(registry.decoded(registry.id(object)));
+							}
+						}
+					} else {
+						toFetch.add(registry.decoded(registry.id(uri)));
+					}
+				}
+			}
+		}
+		if (kBsLocalNoNetwork.equalsIgnoreCase("false")) {
+			fetcher.fetchAll(toFetch, rdfCache);
+		}
+
+		// 2) equivalent resources available in the cache, per base resource
+		Map<String, Set<String>> baseURIsAndEquivalentURIs = new HashMap<String, Set<String>>();
+		BitSet alreadyProcessedURI = new BitSet();
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
+			for (List<String> uriList : uriLists) {
+				Set<String> sameAsUris = new HashSet<String>();
+				String baseURI = "";
+				for (String uri : uriList) {
+					Collection<String> equivalents;
+					if (uri.contains(baseURL)) {
+						baseURI = uri;
+						equivalents = new ArrayList<String>();
+						for (String object : sameAsLinks.get(uri)) {
+							if (all || object.startsWith(crawlSameAs)) {
+								equivalents.add(object);
+							}
+						}
+					} else {
+						equivalents = Arrays.asList(uri);
+					}
+					for (String equivalent : equivalents) {
+						int id = registry.id(equivalent);
+						if (!alreadyProcessedURI.get(id)
+								&& rdfCache.contains(registry.fileName(registry.decodedId(id)))) {
+							sameAsUris.add(registry.decoded(id));
+							alreadyProcessedURI.set(id);
+						}
+					}
+				}
+				if (baseURIsAndEquivalentURIs.get(baseURI) == null) {
+					baseURIsAndEquivalentURIs.put(baseURI, sameAsUris);
+				} else {
+					baseURIsAndEquivalentURIs.get(baseURI).addAll(sameAsUris);
+				}
+			}
+		}
+
+		// 3) edges from the base resources to the objects of their equivalent resources
+		SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph = new SimpleDirectedWeightedGraph<Integer, LabeledEdge>(
+				LabeledEdge.class);
+		Map<String, int[]> pairsPerResource = new HashMap<String, int[]>();
+		int sameAsId = registry.id(sameAsProperty);
+		for (CandidateSet uriLists : mentionsWithURIs.values()) {
+			for (List<String> uriList : uriLists) {
+				for (String uri : uriList) {
+					if (!uri.contains(baseURL)) {
+						continue;
+					}
+					int vertex1 = registry.decodedId(registry.id(uri));
+					int foldedVertex1 = registry.caseFoldedId(vertex1);
+					graph.addVertex(vertex1);
+					Set<String> sameAsURIsIndividual = baseURIsAndEquivalentURIs.get(uri);
+					if (sameAsURIsIndividual == null) {
+						continue;
+					}
+					for (String uriAlias : sameAsURIsIndividual) {
+						if (uri.equalsIgnoreCase(uriAlias)) { //avoiding loops
+							continue;
+						}
+						int[] pairs = pairsPerResource.get(uriAlias);
+						if (pairs == null) {
+							pairs = pairsOf(uriAlias, rdfCache, sameAsId, profile, registry);
+							pairsPerResource.put(uriAlias, pairs);
+						}
+						for (int i = 0; i < pairs.length; i += 2) {
+							int vertex2 = registry.decodedId(pairs[i + 1]);
+							if (foldedVertex1 != registry.caseFoldedId(vertex2)) {
+								graph.addVertex(vertex2);
+								LabeledEdge edge = new LabeledEdge<Integer>(vertex1, vertex2, registry.get(pairs[i]));
+								//relation weight in parameter file
+								graph.setEdgeWeight(edge, profile.weight(pairs[i], registry));
+								graph.addEdge(vertex1, vertex2, edge);
+							}
+						}
+					}
+				}
+			}
+		}
+		logger.info("vertex size: " + graph.vertexSet().size());
+		logger.info("edge size: " + graph.edgeSet().size());
+		return graph;
+	}
+
+	/**
+	 * Objects of the sameAs links of a base resource.
+	 */
+	private static List<String> sameAsLinksOf(String uri, RDFCacheStore rdfCache, String sameAsProperty,
+			UriRegistry registry, SameAsClosure closure) {
+		if (closure != null && closure.contains(uri)) {
+			return closure.equivalents(uri);
+		}
+		SameAsSink sink = new SameAsSink(registry.canonical(registry.id(uri)), sameAsProperty);
+		try {
+			rdfCache.stream(registry.fileName(registry.id(uri)), sink);
+		} catch (Exception e) { //the links read before the error are not kept
+			logger.info("problem with RDF data of " + uri + ": " + e.getMessage());
+			return new ArrayList<String>();
+		}
+		return sink.objects;
+	}
+
+	/**
+	 * (predicate, object) pairs of an equivalent resource.
+	 */
+	private static int[] pairsOf(String uriAlias, RDFCacheStore rdfCache, int sameAsId, PredicateProfile profile,
+			UriRegistry registry) {
+		//descriptions are cached with canonical URIs, whatever the encoding of the alias
+		PairSink sink = new PairSink(registry.canonical(registry.id(uriAlias)), sameAsId, profile, registry);
+		try {
+			if (!rdfCache.stream(registry.fileName(registry.decodedId(registry.id(uriAlias))), sink)) {
+				return NO_PAIRS;
+			}
+		} catch (Exception e) { //the pairs read before the error are not kept
+			logger.info("problem with RDF data of " + uriAlias + ": " + e.getMessage());
+			return NO_PAIRS;
+		}
+		return sink.pairs();
+	}
+}
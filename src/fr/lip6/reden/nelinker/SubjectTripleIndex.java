@@ -0,0 +1,221 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+/**
+ * Read-only index of triples by subject, used by the graph fusion (fusionBackend=index)
+ * instead of querying a Jena model for every resource. The index is filled by a
+ * Builder, which receives the triples streamed from the RDF cache (no model is built).
+ * Terms are the registry IDs of their string forms (as RDFNode.toString), the
+ * (predicate, object) pairs of a subject are contiguous in packed arrays.
+ *
+ * @author Brando & Frontini
+ */
+public class SubjectTripleIndex {
+
+	/** only used to give the string forms of the terms */
+	private static final Model TERMS = ModelFactory.createDefaultModel();
+
+	/** sorted IDs of the subjects */
+	private final int[] subjects;
+
+	/** first pair of every subject (and end of the last one) */
+	private final int[] start;
+
+	private final int[] predicates;
+
+	private final int[] objects;
+
+	private SubjectTripleIndex(int[] subjects, int[] start, int[] predicates, int[] objects) {
+		this.subjects = subjects;
+		this.start = start;
+		this.predicates = predicates;
+		this.objects = objects;
+	}
+
+	/**
+	 * Collects the triples whose subject is a URI, as they are streamed.
+	 */
+	public static class Builder extends StreamRDFBase {
+		private final UriRegistry registry;
+		private final PredicateProfile profile;
+		private final int equivalenceId;
+		private final Map<Node, Integer> terms = new HashMap<Node, Integer>();
+		private final Map<Integer, List<Integer>> equivalents = new HashMap<Integer, List<Integer>>();
+		private int size = 0;
+		private long[] keys = new long[1024]; //subject and number of the triple
+		private int[] predicates = new int[1024];
+		private int[] objects = new int[1024];
+
+		/**
+		 * @param registry, the URI registry
+		 * @param profile, the triples of the predicates dropped by the profile are not indexed (may be null)
+		 * @param equivalenceId, registry ID of the equivalence property whose objects are
+		 * recorded (see equivalents), whatever the profile (-1 for none)
+		 */
+		public Builder(UriRegistry registry, PredicateProfile profile, int equivalenceId) {
+			this.registry = registry;
+			this.profile = profile;
+			this.equivalenceId = equivalenceId;
+		}
+
+		@Override
+		public void triple(Triple t) {
+			if (!t.getSubject().isURI()) {
+				return;
+			}
+			int predicate = termId(t.getPredicate(), registry, terms);
+			if (predicate == equivalenceId) {
+				int subject = termId(t.getSubject(), registry, terms);
+				List<Integer> objectsOfSubject = equivalents.get(subject);
+				if (objectsOfSubject == null) {
+					objectsOfSubject = new ArrayList<Integer>();
+					equivalents.put(subject, objectsOfSubject);
+				}
+				objectsOfSubject.add(termId(t.getObject(), registry, terms));
+			}
+			if (profile != null && !profile.keeps(predicate, registry)) {
+				return;
+			}
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				predicates = Arrays.copyOf(predicates, size * 2);
+				objects = Arrays.copyOf(objects, size * 2);
+			}
+			keys[size] = ((long) termId(t.getSubject(), registry, terms) << 32) | size;
+			predicates[size] = predicate;
+			objects[size] = termId(t.getObject(), registry, terms);
+			size++;
+		}
+
+		/**
+		 * Objects of the equivalence links of a subject among the triples received so far.
+		 * @param subject, registry ID of the subject
+		 * @return the registry IDs of the objects
+		 */
+		public List<Integer> equivalents(int subject) {
+			List<Integer> objectsOfSubject = equivalents.get(subject);
+			return objectsOfSubject != null ? objectsOfSubject : Collections.<Integer>emptyList();
+		}
+
+		/**
+		 * @return the index of the triples received so far
+		 */
+		public SubjectTripleIndex build() {
+			return SubjectTripleIndex.build(Arrays.copyOf(keys, size), predicates, objects);
+		}
+	}
+
+	/**
+	 * Sorts the triples by subject.
+	 * @param keys, subject and number of every triple
+	 * @param predicates, predicate of every triple (by number)
+	 * @param objects, object of every triple (by number)
+	 * @return the index
+	 */
+	private static SubjectTripleIndex build(long[] keys, int[] predicates, int[] objects) {
+		int size = keys.length;
+		Arrays.sort(keys);
+		int[] sortedPredicates = new int[size];
+		int[] sortedObjects = new int[size];
+		int[] subjects = new int[size];
+		int[] start = new int[size + 1];
+		int subjectCount = 0;
+		for (int i = 0; i < size; i++) {
+			int subject = (int) (keys[i] >>> 32);
+			int triple = (int) keys[i];
+			if (subjectCount == 0 || subjects[subjectCount - 1] != subject) {
+				subjects[subjectCount] = subject;
+				start[subjectCount] = i;
+				subjectCount++;
+			}
+			sortedPredicates[i] = predicates[triple];
+			sortedObjects[i] = objects[triple];
+		}
+		start[subjectCount] = size;
+		return new SubjectTripleIndex(Arrays.copyOf(subjects, subjectCount),
+				Arrays.copyOf(start, subjectCount + 1), sortedPredicates, sortedObjects);
+	}
+
+	private static int termId(Node node, UriRegistry registry, Map<Node, Integer> terms) {
+		Integer id = terms.get(node);
+		if (id == null) {
+			id = registry.id(termOf(node));
+			terms.put(node, id);
+		}
+		return id;
+	}
+
+	/**
+	 * String form of a term, as given by the Jena statements (RDFNode.toString):
+	 * the URI of a resource, the lexical form of a literal with its language or datatype.
+	 * @param node, the term
+	 * @return the string form
+	 */
+	static String termOf(Node node) {
+		return node.isURI() ? node.getURI() : TERMS.asRDFNode(node).toString();
+	}
+
+	/**
+	 * Position of a subject in the index.
+	 * @param subject, registry ID of the subject (-1 if unknown)
+	 * @return the position or -1 if the subject has no triple
+	 */
+	public int find(int subject) {
+		if (subject < 0) {
+			return -1;
+		}
+		int pos = Arrays.binarySearch(subjects, subject);
+		return pos >= 0 ? pos : -1;
+	}
+
+	/**
+	 * @param pos, position of a subject
+	 * @return the first pair of the subject
+	 */
+	public int start(int pos) {
+		return start[pos];
+	}
+
+	/**
+	 * @param pos, position of a subject
+	 * @return the end (exclusive) of the pairs of the subject
+	 */
+	public int end(int pos) {
+		return start[pos + 1];
+	}
+
+	/**
+	 * @param pair, number of a pair
+	 * @return the registry ID of its predicate
+	 */
+	public int predicate(int pair) {
+		return predicates[pair];
+	}
+
+	/**
+	 * @param pair, number of a pair
+	 * @return the registry ID of its object
+	 */
+	public int object(int pair) {
+		return objects[pair];
+	}
+
+	/**
+	 * @return the number of triples
+	 */
+	public int size() {
+		return predicates.length;
+	}
+}
@@ -0,0 +1,161 @@
+package fr.lip6.reden.nelinker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-document registry of URIs (and other RDF terms): every distinct term gets a dense
+ * int ID, a new registry is created for every TEI file so that the terms of the
+ * previous files are released. The decoded form (see Util.decompose) and the file name form (see
+ * Util.replaceNonAlphabeticCharacters) of every term are computed once and cached,
+ * as well as its canonical form (see CanonicalURIs), the subject of its cached
+ * description.
+ *
+ * @author Brando & Frontini
+ */
+public class UriRegistry {
+
+	private static final int UNKNOWN = -1;
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private final List<String> terms = new ArrayList<String>();
+
+	private int[] decodedIds = new int[1024];
+
+	private int[] caseFoldedIds = new int[1024];
+
+	private int[] canonicalIds = new int[1024];
+
+	private String[] fileNames = new String[1024];
+
+	/**
+	 * Get the ID of a term, a new ID is assigned the first time the term is seen.
+	 * @param term, the URI (or literal)
+	 * @return the ID
+	 */
+	public synchronized int id(String term) {
+		Integer id = ids.get(term);
+		if (id == null) {
+			id = terms.size();
+			terms.add(term);
+			ids.put(term, id);
+			if (id >= decodedIds.length) {
+				int newLength = decodedIds.length * 2;
+				decodedIds = Arrays.copyOf(decodedIds, newLength);
+				caseFoldedIds = Arrays.copyOf(caseFoldedIds, newLength);
+				canonicalIds = Arrays.copyOf(canonicalIds, newLength);
+				fileNames = Arrays.copyOf(fileNames, newLength);
+			}
+			decodedIds[id] = UNKNOWN;
+			caseFoldedIds[id] = UNKNOWN;
+			canonicalIds[id] = UNKNOWN;
+		}
+		return id;
+	}
+
+	/**
+	 * Get the ID of a term only if it is already registered.
+	 * @param term, the URI (or literal)
+	 * @return the ID or -1
+	 */
+	public synchronized int lookup(String term) {
+		Integer id = ids.get(term);
+		return id == null ? UNKNOWN : id;
+	}
+
+	/**
+	 * Get the term of a given ID.
+	 * @param id, the ID
+	 * @return the term
+	 */
+	public synchronized String get(int id) {
+		return terms.get(id);
+	}
+
+	/**
+	 * Get the ID of the decoded form of a term (see Util.decompose).
+	 * @param id, the ID of the term
+	 * @return the ID of the decoded term
+	 */
+	public synchronized int decodedId(int id) {
+		if (decodedIds[id] == UNKNOWN) {
+			String term = terms.get(id);
+			String decoded = Util.decompose(term);
+			decodedIds[id] = decoded.equals(term) ? id : id(decoded);
+		}
+		return decodedIds[id];
+	}
+
+	/**
+	 * Get the decoded form of a term (see Util.decompose).
+	 * @param id, the ID of the term
+	 * @return the decoded term
+	 */
+	public synchronized String decoded(int id) {
+		return terms.get(decodedId(id));
+	}
+
+	/**
+	 * Get the ID of the lower case form of a term, two terms equal ignoring
+	 * case have the same case folded ID.
+	 * @param id, the ID of the term
+	 * @return the ID of the lower case term
+	 */
+	public synchronized int caseFoldedId(int id) {
+		if (caseFoldedIds[id] == UNKNOWN) {
+			String term = terms.get(id);
+			String folded = term.toLowerCase();
+			caseFoldedIds[id] = folded.equals(term) ? id : id(folded);
+		}
+		return caseFoldedIds[id];
+	}
+
+	/**
+	 * Get the ID of the canonical form of a term (see CanonicalURIs), all the
+	 * encoding variants of a URI have the same canonical ID.
+	 * @param id, the ID of the term
+	 * @return the ID of the canonical term
+	 */
+	public synchronized int canonicalId(int id) {
+		if (canonicalIds[id] == UNKNOWN) {
+			String term = terms.get(id);
+			String canonical = CanonicalURIs.canonical(term);
+			canonicalIds[id] = canonical.equals(term) ? id : id(canonical);
+		}
+		return canonicalIds[id];
+	}
+
+	/**
+	 * Get the canonical form of a term (see CanonicalURIs).
+	 * @param id, the ID of the term
+	 * @return the canonical term
+	 */
+	public synchronized String canonical(int id) {
+		return terms.get(canonicalId(id));
+	}
+
+	/**
+	 * Get the file name form of a term, as used for the RDF files of rdfData
+	 * (see Util.replaceNonAlphabeticCharacters).
+	 * @param id, the ID of the term
+	 * @return the file name form
+	 */
+	public synchronized String fileName(int id) {
+		if (fileNames[id] == null) {
+			fileNames[id] = Util.replaceNonAlphabeticCharacters(terms.get(id));
+		}
+		return fileNames[id];
+	}
+
+	/**
+	 * Number of registered terms.
+	 * @return the number of terms
+	 */
+	public synchronized int size() {
+		return terms.size();
+	}
+}
@@ -26,16 +26,17 @@ public class Util {
 	/**
 	 * Print graph to standard output.
 	 * @param graph, the given graph
+	 * @param registry, the URIs of the vertices
 	 * @param out, where to write the output
 	 */
 	@SuppressWarnings("rawtypes")
 	public static void printGraph(
-			SimpleDirectedWeightedGraph<String, LabeledEdge> graph,
-			FileWriterWithEncoding out) {
+			SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph,
+			UriRegistry registry, FileWriterWithEncoding out) {
 		try {
 			for (LabeledEdge edge : graph.edgeSet()) {
-				out.write(graph.getEdgeSource(edge) + " (" + edge.toString() + " (weight:"+ graph.getEdgeWeight(edge)+") "
-						+ ") " + graph.getEdgeTarget(edge) + "\n");
+				out.write(registry.get(graph.getEdgeSource(edge)) + " (" + edge.toString() + " (weight:"+ graph.getEdgeWeight(edge)+") "
+						+ ") " + registry.get(graph.getEdgeTarget(edge)) + "\n");
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
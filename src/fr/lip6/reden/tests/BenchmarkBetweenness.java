@@ -0,0 +1,87 @@
+package fr.lip6.reden.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+import fr.lip6.reden.nelinker.CsrGraph;
+import fr.lip6.reden.nelinker.LabeledEdge;
+import fr.lip6.reden.nelinker.NativeCentrality;
+import fr.lip6.reden.nelinker.ParallelBetweennessCentrality;
+
+/**
+ * Scaling of ParallelBetweennessCentrality with the number of threads, on random
+ * graphs shaped like the paragraph graphs (candidates linked to shared objects).
+ * Every time is the best of several runs after a warm-up run. The speedups are only
+ * meaningful up to the number of processors, which is printed first.
+ * Arguments (optional): number of vertices, number of edges per vertex, largest
+ * number of threads, number of runs.
+ */
+class BenchmarkBetweenness {
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int degree = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int processors = Runtime.getRuntime().availableProcessors();
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : processors;
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+		Random random = new Random(42);
+		SimpleDirectedWeightedGraph<Integer, LabeledEdge> graph = new SimpleDirectedWeightedGraph<Integer, LabeledEdge>(
+				LabeledEdge.class);
+		int candidates = Math.max(1, n / 10);
+		for (int v = 0; v < n; v++) {
+			graph.addVertex(v);
+		}
+		for (int v = 0; v < n; v++) {
+			for (int k = 0; k < degree; k++) {
+				int source = random.nextInt(candidates);
+				int target = candidates + random.nextInt(n - candidates);
+				if (!graph.containsEdge(source, target)) {
+					graph.addEdge(source, target, new LabeledEdge<Integer>(source, target, "p" + k));
+				}
+			}
+		}
+		CsrGraph csr = CsrGraph.of(graph);
+		System.out.println(csr.size() + " vertices, " + graph.edgeSet().size() + " edges, " + processors
+				+ " processors, best of " + runs + " runs");
+
+		double[] sequential = NativeCentrality.betweenness(csr); //warm up
+		long sequentialTime = Long.MAX_VALUE;
+		for (int run = 0; run < runs; run++) {
+			long start = System.currentTimeMillis();
+			sequential = NativeCentrality.betweenness(csr);
+			sequentialTime = Math.min(sequentialTime, System.currentTimeMillis() - start);
+		}
+		System.out.println("NativeBetweennessCentrality: " + sequentialTime + " ms");
+
+		double[] reference = null;
+		for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads && 2 * threads > maxThreads
+				? maxThreads : 2 * threads) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			double[] scores = ParallelBetweennessCentrality.betweenness(csr, pool); //warm up
+			long time = Long.MAX_VALUE;
+			for (int run = 0; run < runs; run++) {
+				long start = System.currentTimeMillis();
+				scores = ParallelBetweennessCentrality.betweenness(csr, pool);
+				time = Math.min(time, System.currentTimeMillis() - start);
+			}
+			pool.shutdown();
+			if (reference == null) {
+				reference = scores;
+			}
+			double maxDiff = 0;
+			for (int v = 0; v < scores.length; v++) {
+				maxDiff = Math.max(maxDiff, Math.abs(scores[v] - sequential[v]));
+			}
+			System.out.println("ParallelBetweennessCentrality, " + threads + " threads: " + time + " ms, speedup "
+					+ String.format("%.2f", (double) sequentialTime / Math.max(1, time))
+					+ ", same as 1 thread: " + Arrays.equals(scores, reference)
+					+ ", largest difference with the sequential scores: " + maxDiff
+					+ (threads > processors ? " (more threads than processors)" : ""));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package fr.lip6.reden.tests;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import fr.lip6.reden.nelinker.DicoFST;
+import fr.lip6.reden.nelinker.DicoLookupService;
+import fr.lip6.reden.nelinker.DicoProcessingNEL;
+
+/**
+ * Batched dictionary lookups (DicoLookupService.searchBatch) on a small generated
+ * dictionary, with the Lucene index and with the FST dictionary: a name with more
+ * entries than the per-name limit (100) must not take the entries of the other names
+ * of the same batch, whether they match as many entries (equal scores) or fewer.
+ * The dictionary files of subfolders are read as well.
+ */
+class TestDicoLookupService {
+
+	private static int size(Map<String, Set<String>> results, String name) {
+		Set<String> uris = results.get(name);
+		return uris != null ? uris.size() : 0;
+	}
+
+	private static void check(String what, boolean ok) {
+		System.out.println((ok ? "ok      " : "FAILED  ") + what);
+	}
+
+	public static void main(String[] args) throws Exception {
+		File data = Files.createTempDirectory("dico").toFile();
+		File index = Files.createTempDirectory("index").toFile();
+		Writer out = new OutputStreamWriter(Files.newOutputStream(new File(data, "authors.tsv").toPath()), "UTF-8");
+		for (int i = 0; i < 1000; i++) { //frequent names, more entries than the limit of a whole batch
+			out.write("Victor Hugo\tHugo, Victor\thttp://example.org/hugo/" + i + "\n");
+		}
+		for (int i = 0; i < 1000; i++) {
+			out.write("Zola\tZola, Émile\thttp://example.org/zola/" + i + "\n");
+		}
+		for (int i = 0; i < 150; i++) { //less frequent name, more entries than the limit
+			out.write("André Gide\tGide, André\thttp://example.org/gide/" + i + "\n");
+		}
+		out.close();
+		File more = new File(data, "more"); //subfolder, read by the index and by the FST
+		more.mkdir();
+		out = new OutputStreamWriter(Files.newOutputStream(new File(more, "authors.tsv").toPath()), "UTF-8");
+		out.write("Renan\tRenan, Ernest\thttp://example.org/renan\n");
+		out.close();
+		DicoProcessingNEL.createIndex(index.getPath(), data.getPath(), "nameForm");
+		DicoFST.build(index.getPath(), data.getPath());
+
+		for (boolean useFst : new boolean[] { false, true }) {
+			DicoLookupService service = new DicoLookupService(useFst);
+			String kind = useFst ? "FST: " : "Lucene: ";
+			Map<String, Set<String>> results = service.searchBatch(index.getPath(), "nameForm",
+					Arrays.asList("victorhugo", "zola"));
+			check(kind + "two frequent names limited to 100 entries each", size(results, "victorhugo") == 100
+					&& size(results, "zola") == 100);
+			results = service.searchBatch(index.getPath(), "nameForm", Arrays.asList("victorhugo", "andrégide"));
+			check(kind + "frequent name limited to 100 entries next to a less frequent one",
+					size(results, "victorhugo") == 100 && size(results, "andrégide") == 100);
+			results = service.searchBatch(index.getPath(), "nameForm",
+					Arrays.asList("victorhugo", "zola", "renan", "unknown"));
+			check(kind + "single entry of a rare name in the same batch", size(results, "renan") == 1);
+			check(kind + "unknown name not found", !results.containsKey("unknown"));
+			service.close();
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package fr.lip6.reden.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.lip6.reden.nelinker.RDFCacheStore;
+import fr.lip6.reden.nelinker.RDFFetcher;
+import fr.lip6.reden.nelinker.SparqlRDFRetriever;
+
+/**
+ * RDFFetcher and SparqlRDFRetriever against local stand-ins of the LD sets, without
+ * network: two HTTP servers serving the descriptions of their resources (each one
+ * recording its largest number of concurrent requests), a SPARQL service over an
+ * in-memory model, and an in-memory dataset. The descriptions are fetched into a
+ * temporary RDF cache. Arguments (optional): number of URIs per server, number of
+ * threads, maximum number of concurrent requests per host.
+ */
+class TestRDFFetcher {
+
+	private static final String P = "http://example.org/p";
+
+	/** concurrent requests to all the resource servers */
+	private static final AtomicInteger allCurrent = new AtomicInteger();
+
+	private static final AtomicInteger allMax = new AtomicInteger();
+
+	/**
+	 * Serves "<uri> <p> "n" ." for /resource/n after a short delay, 404 otherwise.
+	 */
+	private static class ResourceServer implements HttpHandler {
+
+		private final HttpServer server;
+
+		private final AtomicInteger current = new AtomicInteger();
+
+		private final AtomicInteger max = new AtomicInteger();
+
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private ResourceServer() throws IOException {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/", this);
+			server.setExecutor(Executors.newCachedThreadPool());
+			server.start();
+		}
+
+		private String uri(int n) {
+			return "http://127.0.0.1:" + server.getAddress().getPort() + "/resource/" + n;
+		}
+
+		public void handle(HttpExchange exchange) throws IOException {
+			max.accumulateAndGet(current.incrementAndGet(), Math::max);
+			allMax.accumulateAndGet(allCurrent.incrementAndGet(), Math::max);
+			requests.incrementAndGet();
+			try {
+				Thread.sleep(50);
+				String path = exchange.getRequestURI().getPath();
+				if (!path.startsWith("/resource/")) {
+					exchange.sendResponseHeaders(404, -1);
+					return;
+				}
+				String uri = "http://127.0.0.1:" + server.getAddress().getPort() + path;
+				String n = path.substring("/resource/".length());
+				send(exchange, "<" + uri + "> <" + P + "> \"" + n + "\" .\n");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				current.decrementAndGet();
+				allCurrent.decrementAndGet();
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * SPARQL service (GET or POST of the query parameter) over an in-memory model.
+	 */
+	private static class SparqlServer implements HttpHandler {
+
+		private final HttpServer server;
+
+		private final Model data;
+
+		private final AtomicInteger queries = new AtomicInteger();
+
+		private SparqlServer(Model data) throws IOException {
+			this.data = data;
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/sparql", this);
+			server.start();
+		}
+
+		private String endpoint() {
+			return "http://127.0.0.1:" + server.getAddress().getPort() + "/sparql";
+		}
+
+		public void handle(HttpExchange exchange) throws IOException {
+			queries.incrementAndGet();
+			try {
+				String params = exchange.getRequestURI().getRawQuery();
+				if ("POST".equals(exchange.getRequestMethod())) {
+					params = new String(readAll(exchange.getRequestBody()), "UTF-8");
+				}
+				String query = null;
+				for (String param : params.split("&")) {
+					if (param.startsWith("query=")) {
+						query = URLDecoder.decode(param.substring("query=".length()), "UTF-8");
+					}
+				}
+				QueryExecution qexec = QueryExecutionFactory.create(query, data);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				RDFDataMgr.write(out, qexec.execConstruct(), Lang.NTRIPLES);
+				qexec.close();
+				send(exchange, out.toString("UTF-8"));
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	private static void send(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/n-triples");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void check(String what, boolean ok) {
+		System.out.println((ok ? "ok      " : "FAILED  ") + what);
+	}
+
+	private static Model describe(String host, int from, int to) {
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = from; i < to; i++) {
+			Resource r = model.createResource("http://" + host + "/resource/" + i);
+			r.addProperty(model.createProperty(P), "" + i);
+		}
+		return model;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int perServer = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int maxPerHost = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+		// 1) dereferencing: per-host limit, the second host is served while the first one is busy
+		ResourceServer a = new ResourceServer();
+		ResourceServer b = new ResourceServer();
+		RDFCacheStore store = RDFCacheStore.open("files",
+				Files.createTempDirectory("rdfdata").toString() + "/");
+		List<String> uris = new ArrayList<String>();
+		for (int i = 0; i < perServer; i++) {
+			uris.add(a.uri(i));
+			uris.add(b.uri(i));
+		}
+		RDFFetcher fetcher = new RDFFetcher(threads, maxPerHost, 0);
+		long start = System.currentTimeMillis();
+		int fetched = fetcher.fetchAll(uris, store);
+		long time = System.currentTimeMillis() - start;
+		System.out.println("dereferenced " + fetched + " URIs of 2 hosts in " + time + " ms, at most "
+				+ a.max + " and " + b.max + " concurrent requests per host");
+		check("all the URIs fetched", fetched == 2 * perServer);
+		check("at most " + maxPerHost + " concurrent requests per host", a.max.get() <= maxPerHost
+				&& b.max.get() <= maxPerHost);
+		check("the hosts served in parallel (" + allMax + " concurrent requests)", threads <= maxPerHost
+				|| allMax.get() > maxPerHost);
+		check("cached URIs not requested again", fetcher.fetchAll(uris, store) == 0
+				&& a.requests.get() + b.requests.get() == 2 * perServer);
+		fetcher.shutdown();
+
+		// 2) rate limit: 10 requests per second to one host
+		fetcher = new RDFFetcher(threads, threads, 10);
+		uris.clear();
+		for (int i = perServer; i < perServer + 5; i++) {
+			uris.add(a.uri(i));
+		}
+		start = System.currentTimeMillis();
+		fetched = fetcher.fetchAll(uris, store);
+		time = System.currentTimeMillis() - start;
+		System.out.println("dereferenced " + fetched + " URIs at 10 requests per second in " + time + " ms");
+		check("rate limit of the host", fetched == 5 && time >= 400);
+		fetcher.shutdown();
+
+		// 3) SPARQL: a service and an in-memory dataset, URIs missing from the endpoint are dereferenced
+		SparqlServer service = new SparqlServer(describe("data.example.org", 0, 15));
+		SparqlRDFRetriever sparql = new SparqlRDFRetriever(4);
+		sparql.addEndpoint("data.example.org", service.endpoint());
+		String local = "127.0.0.1:" + b.server.getAddress().getPort();
+		sparql.addDataset(local, DatasetFactory.create(describe(local, 100, 110)));
+		uris.clear();
+		for (int i = 0; i < 15; i++) {
+			uris.add("http://data.example.org/resource/" + i);
+		}
+		for (int i = 100; i < 112; i++) { //the last 2 are not in the dataset
+			uris.add(b.uri(i));
+		}
+		int requests = b.requests.get();
+		fetcher = new RDFFetcher(threads, maxPerHost, 0);
+		fetcher.setSparqlRetriever(sparql);
+		fetched = fetcher.fetchAll(uris, store);
+		System.out.println("retrieved " + fetched + " URIs with " + service.queries + " SPARQL queries, "
+				+ (b.requests.get() - requests) + " dereferenced");
+		check("SPARQL service queried by chunks", service.queries.get() == 4);
+		check("URIs missing from the dataset dereferenced", b.requests.get() - requests == 2);
+		check("all the URIs retrieved", fetched == 27);
+		Model model = ModelFactory.createDefaultModel();
+		check("description written in the cache", store.read(RDFCacheStore.key(uris.get(0)), model)
+				&& model.size() == 1);
+		fetcher.shutdown();
+
+		a.server.stop(0);
+		b.server.stop(0);
+		service.server.stop(0);
+		store.close();
+		System.exit(0);
+	}
+}